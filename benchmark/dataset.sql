@@ -0,0 +1,43 @@
+-- Benchmark dataset for query plans of transactions and accounts.
+-- Run on empty sj_coins schema migrated by Flyway (see README.md in this directory).
+-- Creates 5 000 regular accounts, 50 merchants and 1 000 000 transactions spread over two years.
+
+DROP TABLE IF EXISTS `benchmark_digits`;
+CREATE TABLE `benchmark_digits` (`d` int NOT NULL PRIMARY KEY);
+INSERT INTO `benchmark_digits` VALUES (0), (1), (2), (3), (4), (5), (6), (7), (8), (9);
+
+DROP TABLE IF EXISTS `benchmark_numbers`;
+CREATE TABLE `benchmark_numbers` (`n` int NOT NULL PRIMARY KEY);
+INSERT INTO `benchmark_numbers` (`n`)
+  SELECT d1.d + d2.d * 10 + d3.d * 100 + d4.d * 1000 + d5.d * 10000 + d6.d * 100000
+  FROM benchmark_digits d1, benchmark_digits d2, benchmark_digits d3,
+       benchmark_digits d4, benchmark_digits d5, benchmark_digits d6;
+
+INSERT INTO `accounts` (`ldap_id`, `full_name`, `image`, `is_new`, `account_type`, `deleted`, `email`)
+  SELECT CONCAT('user', n), CONCAT('User ', n), '/account/default', n % 20 = 0, 'REGULAR', n % 50 = 0,
+         CONCAT('user', n, '@example.com')
+  FROM benchmark_numbers WHERE n < 5000;
+
+INSERT INTO `accounts` (`ldap_id`, `full_name`, `image`, `is_new`, `account_type`, `deleted`, `email`)
+  SELECT CONCAT('merchant', n), CONCAT('Merchant ', n), '/account/default', FALSE, 'MERCHANT', FALSE,
+         CONCAT('merchant', n, '@example.com')
+  FROM benchmark_numbers WHERE n < 50;
+
+-- 80% are expenses of users at merchants, the rest are transfers between users and deposits from treasury.
+INSERT INTO `transactions` (`account_ldap_id`, `destination_ldap_id`, `amount`, `comment`, `created`,
+                            `status`, `remain`, `transaction_id`, `type`)
+  SELECT CASE WHEN n % 10 = 9 THEN NULL ELSE CONCAT('user', (n * 7919) % 5000) END,
+         CASE WHEN n % 10 < 8 THEN CONCAT('merchant', n % 50) ELSE CONCAT('user', (n * 104729) % 5000) END,
+         1 + n % 100,
+         'Benchmark transaction',
+         TIMESTAMP('2017-01-01') + INTERVAL (n * 63) SECOND,
+         CASE WHEN n % 100 = 0 THEN 'FAILED' ELSE 'SUCCESS' END,
+         1000,
+         SHA1(n),
+         CASE WHEN n % 10 < 8 THEN 'EXPENSE' WHEN n % 10 = 8 THEN 'TRANSFER' ELSE 'DEPOSIT' END
+  FROM benchmark_numbers;
+
+DROP TABLE `benchmark_numbers`;
+DROP TABLE `benchmark_digits`;
+
+ANALYZE TABLE `accounts`, `transactions`;
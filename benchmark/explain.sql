@@ -0,0 +1,35 @@
+-- Query plans of hot transaction and account queries.
+-- Statements have the same shape as SQL generated by Hibernate for GenericFilter and repositories.
+
+-- Transactions of user (/transactions/my, direction IN)
+EXPLAIN SELECT * FROM transactions t
+WHERE t.destination_ldap_id = 'user42'
+ORDER BY t.created DESC LIMIT 20;
+
+-- Transactions of user (/transactions/my, direction OUT)
+EXPLAIN SELECT * FROM transactions t
+WHERE t.account_ldap_id = 'user42'
+ORDER BY t.created DESC LIMIT 20;
+
+-- Transactions of user (/transactions/my, direction ALL)
+EXPLAIN SELECT * FROM transactions t
+WHERE t.account_ldap_id = 'user42' OR t.destination_ldap_id = 'user42'
+ORDER BY t.created DESC LIMIT 20;
+
+-- Admin filter by type and date range
+EXPLAIN SELECT * FROM transactions t
+WHERE t.type = 'TRANSFER' AND t.created BETWEEN '2017-06-01' AND '2017-07-01'
+ORDER BY t.created DESC LIMIT 50;
+
+-- Admin list without filter
+EXPLAIN SELECT * FROM transactions t
+ORDER BY t.created DESC LIMIT 50;
+
+-- Accounts active since date (enrollment warm up)
+EXPLAIN SELECT DISTINCT a.email FROM transactions t JOIN accounts a ON t.account_ldap_id = a.ldap_id
+WHERE t.created > '2018-10-01' AND a.email IS NOT NULL;
+
+-- Accounts by type
+EXPLAIN SELECT * FROM accounts a
+WHERE a.account_type = 'REGULAR' AND a.deleted = FALSE
+ORDER BY a.is_new DESC, a.full_name ASC;
@@ -9,6 +9,7 @@ import com.softjourn.coin.server.entity.TransactionType;
 import com.softjourn.coin.server.repository.AccountRepository;
 import com.softjourn.coin.server.repository.TransactionRepository;
 import com.softjourn.coin.server.service.CoinService;
+import com.softjourn.coin.server.service.DailyStatsService;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -35,11 +36,15 @@ public class TransactionSavingAspect {
 
     private CoinService coinService;
 
+    private DailyStatsService dailyStatsService;
+
     @Autowired
-    public TransactionSavingAspect(TransactionRepository transactionRepository, AccountRepository accountRepository, CoinService coinService) {
+    public TransactionSavingAspect(TransactionRepository transactionRepository, AccountRepository accountRepository,
+                                   CoinService coinService, DailyStatsService dailyStatsService) {
         this.transactionRepository = transactionRepository;
         this.accountRepository = accountRepository;
         this.coinService = coinService;
+        this.dailyStatsService = dailyStatsService;
     }
 
     @Around("@annotation(com.softjourn.coin.server.aop.annotations.SaveTransaction)")
@@ -61,6 +66,7 @@ public class TransactionSavingAspect {
             throw e;
         } finally {
             transactionRepository.save(transaction);
+            dailyStatsService.record(transaction);
         }
     }
 
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.softjourn.coin.server.dto.CountedSlice;
+import com.softjourn.coin.server.dto.CursorPage;
 import com.softjourn.coin.server.entity.Transaction;
 import com.softjourn.coin.server.service.AutocompleteService;
 import com.softjourn.common.auth.OAuthHelper;
@@ -15,6 +17,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.config.annotation.web.configuration.ResourceServerConfigurerAdapter;
@@ -56,6 +59,41 @@ public class CoinsConfiguration extends ResourceServerConfigurerAdapter {
                 serializers.defaultSerializeValue(value.getContent(),gen);
                 gen.writeEndObject();
             }
+        }).addSerializer(Slice.class, new JsonSerializer<Slice>() {
+            @Override
+            public void serialize(Slice value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                gen.writeStartObject();
+                gen.writeBooleanField("last", value.isLast());
+                gen.writeBooleanField("first", value.isFirst());
+                gen.writeNumberField("numberOfElements", value.getNumberOfElements());
+                gen.writeNumberField("size", value.getSize());
+                gen.writeNumberField("number", value.getNumber());
+                gen.writeObjectField("sort", value.getSort());
+                if (value instanceof CountedSlice) {
+                    CountedSlice counted = (CountedSlice) value;
+                    gen.writeObjectField("approximateTotalElements", counted.getApproximateTotal());
+                    if (counted.getCountedAt() != null) {
+                        gen.writeStringField("countedAt", counted.getCountedAt().toString());
+                    }
+                }
+                gen.writeFieldName("content");
+                serializers.defaultSerializeValue(value.getContent(), gen);
+                gen.writeEndObject();
+            }
+        }).addSerializer(CursorPage.class, new JsonSerializer<CursorPage>() {
+            @Override
+            public void serialize(CursorPage value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                gen.writeStartObject();
+                gen.writeStringField("next", value.getNext());
+                gen.writeBooleanField("last", value.isLast());
+                gen.writeNumberField("numberOfElements", value.getContent().size());
+                if (value.getTotal() != null) {
+                    gen.writeNumberField("totalElements", value.getTotal());
+                }
+                gen.writeFieldName("content");
+                serializers.defaultSerializeValue(value.getContent(), gen);
+                gen.writeEndObject();
+            }
         });
     }
 
@@ -102,8 +140,11 @@ public class CoinsConfiguration extends ResourceServerConfigurerAdapter {
 
     @Bean
     @Autowired
-    public AutocompleteService<Transaction> autocompleteService(EntityManager entityManager) {
-        return new AutocompleteService<>(Transaction.class, entityManager);
+    public AutocompleteService<Transaction> autocompleteService(EntityManager entityManager,
+                                                               @Value("${transactions.autocomplete.max-results:20}") int maxResults,
+                                                               @Value("${transactions.autocomplete.ttl:300000}") long ttl,
+                                                               @Value("${transactions.autocomplete.cache-size:500}") int cacheSize) {
+        return new AutocompleteService<>(Transaction.class, entityManager, maxResults, ttl, cacheSize);
     }
 
     @Override
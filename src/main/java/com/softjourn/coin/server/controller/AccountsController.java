@@ -2,37 +2,81 @@ package com.softjourn.coin.server.controller;
 
 import com.fasterxml.jackson.annotation.JsonView;
 import com.softjourn.coin.server.dto.AccountDTO;
+import com.softjourn.coin.server.dto.AccountDeleteResultDTO;
+import com.softjourn.coin.server.dto.AccountSearchDTO;
+import com.softjourn.coin.server.dto.AccountsDeltaDTO;
 import com.softjourn.coin.server.dto.MerchantDTO;
 import com.softjourn.coin.server.entity.Account;
 import com.softjourn.coin.server.entity.AccountType;
+import com.softjourn.coin.server.entity.ResetJob;
+import com.softjourn.coin.server.service.AccountDirectoryService;
+import com.softjourn.coin.server.service.AccountSearchService;
+import com.softjourn.coin.server.service.AccountsResetService;
 import com.softjourn.coin.server.service.AccountsService;
 import com.softjourn.coin.server.service.CoinService;
+import com.softjourn.coin.server.service.ImageBlobService;
+import com.softjourn.coin.server.service.ImageCache;
+import com.softjourn.coin.server.service.QRCodeService;
+import com.softjourn.coin.server.util.ImageResponseUtil;
 import com.softjourn.coin.server.util.JsonViews;
+import com.softjourn.coin.server.util.LruCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
 import java.security.Principal;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/v1")
 public class AccountsController {
 
+    private static final long IMMUTABLE_MAX_AGE = 365;
+
     private AccountsService accountsService;
     private CoinService coinService;
+    private AccountsResetService accountsResetService;
+    private AccountDirectoryService accountDirectoryService;
+    private AccountSearchService accountSearchService;
+    private ImageCache imageCache;
+    private ImageBlobService imageBlobService;
+    private QRCodeService qrCodeService;
+
+    @Value("${image.cache.max-age:3600}")
+    private long imageMaxAge;
 
     @Autowired
-    public AccountsController(AccountsService accountsService, CoinService coinService) {
+    public AccountsController(AccountsService accountsService,
+                              CoinService coinService,
+                              AccountsResetService accountsResetService,
+                              AccountDirectoryService accountDirectoryService,
+                              AccountSearchService accountSearchService,
+                              ImageCache imageCache,
+                              ImageBlobService imageBlobService,
+                              QRCodeService qrCodeService) {
         this.accountsService = accountsService;
         this.coinService = coinService;
+        this.accountsResetService = accountsResetService;
+        this.accountDirectoryService = accountDirectoryService;
+        this.accountSearchService = accountSearchService;
+        this.imageCache = imageCache;
+        this.imageBlobService = imageBlobService;
+        this.qrCodeService = qrCodeService;
     }
 
     // GET
@@ -49,25 +93,81 @@ public class AccountsController {
     @PreAuthorize("authenticated")
     @RequestMapping(value = "/account/{accountName}/{imageName:.+\\..+}", method = RequestMethod.GET)
     @JsonView(JsonViews.REGULAR.class)
-    public byte[] getImage(@PathVariable String accountName, @PathVariable String imageName) {
+    public ResponseEntity<Resource> getImage(@PathVariable String accountName, @PathVariable String imageName,
+                                             @RequestParam(required = false) Integer size,
+                                             WebRequest webRequest, HttpServletRequest request) {
         String uri = String.format("/account/%s/%s", accountName, imageName);
-        return accountsService.getImage(uri);
+        String cacheControl = CacheControl.maxAge(imageMaxAge, TimeUnit.SECONDS).cachePrivate().getHeaderValue();
+        return ImageResponseUtil.imageResponse(accountsService.getImage(uri, size), cacheControl, webRequest, request);
     }
 
     @PreAuthorize("permitAll")
     @RequestMapping(value = "/account/default", method = RequestMethod.GET)
-    public byte[] getDefaultImage() {
-        return accountsService.getDefaultImage();
+    public ResponseEntity<Resource> getDefaultImage(@RequestParam(required = false) Integer size,
+                                                    WebRequest webRequest, HttpServletRequest request) {
+        String cacheControl = CacheControl.maxAge(imageMaxAge, TimeUnit.SECONDS).cachePublic().getHeaderValue();
+        return ImageResponseUtil.imageResponse(accountsService.getDefaultImage(size), cacheControl, webRequest, request);
+    }
+
+    /**
+     * QR code with ldap id of account, e.g. to receive coins.
+     */
+    @PreAuthorize("authenticated")
+    @RequestMapping(value = "/account/{ldapId}/qr", method = RequestMethod.GET, produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getQRCode(@PathVariable String ldapId,
+                                            @RequestParam(defaultValue = "250") int size,
+                                            @RequestParam(defaultValue = "0") int scale) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(IMMUTABLE_MAX_AGE, TimeUnit.DAYS).cachePrivate())
+                .contentType(MediaType.IMAGE_PNG)
+                .body(qrCodeService.getQRCode(ldapId, size, scale));
+    }
+
+    /**
+     * Content-addressed image. Content under the same name never changes, so it can be cached forever.
+     */
+    @PreAuthorize("authenticated")
+    @RequestMapping(value = "/images/{name:[0-9a-f]{64}\\.[a-z0-9]+}", method = RequestMethod.GET)
+    public ResponseEntity<Resource> getImageBlob(@PathVariable String name,
+                                                 @RequestParam(required = false) Integer size,
+                                                 WebRequest webRequest, HttpServletRequest request) {
+        String cacheControl = CacheControl.maxAge(IMMUTABLE_MAX_AGE, TimeUnit.DAYS).cachePrivate().getHeaderValue() + ", immutable";
+        Resource image = accountsService.getImage(imageBlobService.getUri(name), size);
+        return ImageResponseUtil.imageResponse(image, cacheControl, webRequest, request);
     }
 
     @PreAuthorize("authenticated")
     @RequestMapping(value = "/accounts/all", method = RequestMethod.GET)
-    public List<AccountDTO> getAccounts() {
-        return accountsService.getAll().stream()
-                .filter(account -> account.getAccountType() == AccountType.REGULAR)
-                .map(account ->
-                        new AccountDTO(account.getLdapId(), account.getEmail()))
-                .collect(Collectors.toList());
+    public List<AccountDTO> getAccounts(WebRequest request) {
+        String eTag = "accounts-" + accountDirectoryService.getVersion();
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return accountDirectoryService.getAll();
+    }
+
+    @PreAuthorize("authenticated")
+    @RequestMapping(value = "/accounts/all", params = "since", method = RequestMethod.GET)
+    public AccountsDeltaDTO getAccountsDelta(@RequestParam long since) {
+        return accountDirectoryService.getDelta(since);
+    }
+
+    @PreAuthorize("authenticated")
+    @RequestMapping(value = "/accounts/search", method = RequestMethod.GET)
+    public Page<AccountSearchDTO> searchAccounts(@RequestParam("q") String query, Pageable pageable) {
+        return accountSearchService.search(query, pageable);
+    }
+
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    @RequestMapping(value = "/images/cache/stats", method = RequestMethod.GET)
+    public LruCache.Stats getImageCacheStats() {
+        return imageCache.getStats();
+    }
+
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    @RequestMapping(value = "/qr/cache/stats", method = RequestMethod.GET)
+    public LruCache.Stats getQRCodeCacheStats() {
+        return qrCodeService.getStats();
     }
 
     @PreAuthorize("hasAnyRole('SUPER_ADMIN','BILLING')")
@@ -108,9 +208,21 @@ public class AccountsController {
         return Collections.singletonMap("deleted", accountsService.delete(ldapId));
     }
 
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN','INVENTORY')")
+    @RequestMapping(value = "/accounts/delete", method = RequestMethod.POST)
+    public List<AccountDeleteResultDTO> deleteAccounts(@RequestBody List<String> ldapIds) {
+        return accountsService.delete(ldapIds);
+    }
+
     @PreAuthorize("authenticated")
     @RequestMapping(value = "/reset", method = RequestMethod.GET)
-    public void reset() {
-        accountsService.reset();
+    public ResetJob reset() {
+        return accountsResetService.start();
+    }
+
+    @PreAuthorize("authenticated")
+    @RequestMapping(value = "/reset/status", method = RequestMethod.GET)
+    public ResetJob getResetStatus() {
+        return accountsResetService.getStatus();
     }
 }
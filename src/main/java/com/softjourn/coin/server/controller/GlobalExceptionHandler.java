@@ -56,6 +56,13 @@ public class GlobalExceptionHandler {
         return buildErrorDetails(e, 40908, e.getLocalizedMessage());
     }
 
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(ExportJobNotReadyException.class)
+    public ErrorDetail handleExportJobNotReadyException(ExportJobNotReadyException e) {
+        log.info(e.getLocalizedMessage());
+        return buildErrorDetails(e, 40909, e.getMessage());
+    }
+
     // 404 NOT FOUND
 
     @ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "Account not found.")
@@ -85,6 +92,24 @@ public class GlobalExceptionHandler {
         return buildErrorDetails(e, 40408, "Record does not exists");
     }
 
+    // 413 PAYLOAD TOO LARGE
+
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    @ExceptionHandler(FileTooLargeException.class)
+    public ErrorDetail handleFileTooLargeException(FileTooLargeException e) {
+        log.warn(e.getLocalizedMessage());
+        return buildErrorDetails(e, 41301, e.getMessage());
+    }
+
+    // 503 SERVICE UNAVAILABLE
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(ExportQueueFullException.class)
+    public ErrorDetail handleExportQueueFullException(ExportQueueFullException e) {
+        log.warn(e.getLocalizedMessage());
+        return buildErrorDetails(e, 50301, e.getMessage());
+    }
+
     // 400 BAD REQUEST
 
     @ResponseStatus(HttpStatus.BAD_REQUEST)
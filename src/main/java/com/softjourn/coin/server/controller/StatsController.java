@@ -0,0 +1,80 @@
+package com.softjourn.coin.server.controller;
+
+import com.softjourn.coin.server.dto.AccountStatsDTO;
+import com.softjourn.coin.server.dto.PeriodStatsDTO;
+import com.softjourn.coin.server.entity.AccountDailyStats;
+import com.softjourn.coin.server.entity.TransactionType;
+import com.softjourn.coin.server.service.DailyStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.format.annotation.DateTimeFormat.ISO.DATE;
+
+/**
+ * Transactions stats read from daily aggregates. Days are inclusive, all types are taken when type is not passed.
+ */
+@RestController
+@RequestMapping("/v1/stats")
+public class StatsController {
+
+    private DailyStatsService service;
+
+    @Autowired
+    public StatsController(DailyStatsService service) {
+        this.service = service;
+    }
+
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/accounts/{ldapId}", method = RequestMethod.GET)
+    public List<AccountDailyStats> getForAccount(@PathVariable String ldapId,
+                                                 @RequestParam @DateTimeFormat(iso = DATE) LocalDate from,
+                                                 @RequestParam @DateTimeFormat(iso = DATE) LocalDate to,
+                                                 @RequestParam(required = false) Set<TransactionType> type) {
+        return service.getForAccount(ldapId, from, to, type);
+    }
+
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/totals", method = RequestMethod.GET)
+    public List<PeriodStatsDTO> getTotals(@RequestParam @DateTimeFormat(iso = DATE) LocalDate from,
+                                          @RequestParam @DateTimeFormat(iso = DATE) LocalDate to,
+                                          @RequestParam(required = false) Set<TransactionType> type,
+                                          @RequestParam(defaultValue = "false") boolean monthly) {
+        return service.getTotals(from, to, type, monthly);
+    }
+
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/top", method = RequestMethod.GET)
+    public List<AccountStatsDTO> getTop(@RequestParam @DateTimeFormat(iso = DATE) LocalDate from,
+                                        @RequestParam @DateTimeFormat(iso = DATE) LocalDate to,
+                                        @RequestParam(required = false) Set<TransactionType> type,
+                                        @RequestParam(defaultValue = "true") boolean incoming,
+                                        @RequestParam(defaultValue = "10") int size) {
+        return service.getTop(from, to, type, incoming, size);
+    }
+
+    /**
+     * Rebuilds stats of days from transactions in background.
+     */
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    @RequestMapping(value = "/backfill", method = RequestMethod.POST)
+    public DailyStatsService.Backfill startBackfill(@RequestParam(required = false) @DateTimeFormat(iso = DATE) LocalDate from,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = DATE) LocalDate to) {
+        return service.startBackfill(from, to);
+    }
+
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    @RequestMapping(value = "/backfill", method = RequestMethod.GET)
+    public DailyStatsService.Backfill getBackfill() {
+        return service.getBackfill();
+    }
+}
@@ -1,53 +1,102 @@
 package com.softjourn.coin.server.controller;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.softjourn.coin.server.dto.CursorPage;
+import com.softjourn.coin.server.dto.ExportJob;
 import com.softjourn.coin.server.dto.MobileTransactionDTO;
+import com.softjourn.coin.server.dto.TransactionDTO;
 import com.softjourn.coin.server.entity.Transaction;
 import com.softjourn.coin.server.service.AutocompleteService;
+import com.softjourn.coin.server.service.ExportFormat;
+import com.softjourn.coin.server.service.ExportJobService;
 import com.softjourn.coin.server.service.GenericFilter;
+import com.softjourn.coin.server.service.TransactionExportService;
 import com.softjourn.coin.server.service.TransactionsService;
 import com.softjourn.coin.server.util.JsonViews;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.Principal;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/v1/transactions")
 public class TransactionsController {
 
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
     private TransactionsService service;
 
     private AutocompleteService<Transaction> autocompleteService;
 
+    private TransactionExportService exportService;
+
+    private ExportJobService exportJobService;
+
 
     @Autowired
-    public TransactionsController(TransactionsService service, AutocompleteService<Transaction> autocompleteService) {
+    public TransactionsController(TransactionsService service, AutocompleteService<Transaction> autocompleteService,
+                                  TransactionExportService exportService, ExportJobService exportJobService) {
         this.service = service;
         this.autocompleteService = autocompleteService;
+        this.exportService = exportService;
+        this.exportJobService = exportJobService;
     }
 
     @JsonView(JsonViews.REGULAR.class)
     @PreAuthorize("hasRole('BILLING')")
     @RequestMapping(method = RequestMethod.POST)
-    public Page<Transaction> getFiltered(@RequestBody GenericFilter<Transaction> filter) {
+    public Page<TransactionDTO> getFiltered(@RequestBody GenericFilter<Transaction> filter) {
         return service.getFiltered(filter, filter.getPageable().toPageable());
     }
 
+    /**
+     * Filtered transactions without total count.
+     * Cached approximate count is added if requested, it may be missing for new filters.
+     */
+    @JsonView(JsonViews.REGULAR.class)
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/slice", method = RequestMethod.POST)
+    public Slice<TransactionDTO> getFilteredSlice(@RequestBody GenericFilter<Transaction> filter,
+                                                  @RequestParam(defaultValue = "false") boolean count) {
+        return service.getFilteredSlice(filter, filter.getPageable().toPageable(), count);
+    }
+
+    /**
+     * Filtered transactions, newest first, addressed by cursor. Pageable of filter is ignored.
+     */
+    @JsonView(JsonViews.REGULAR.class)
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/cursor", method = RequestMethod.POST)
+    public CursorPage<TransactionDTO> getFiltered(@RequestBody GenericFilter<Transaction> filter,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = "20") int size,
+                                                  @RequestParam(defaultValue = "false") boolean count) {
+        return service.getFiltered(filter, cursor, size, count);
+    }
+
     @PreAuthorize("hasRole('BILLING')")
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     public Transaction get(@PathVariable Long id) {
@@ -60,6 +109,15 @@ public class TransactionsController {
         return service.getForUser(principal.getName(), pageable, direction);
     }
 
+    @PreAuthorize("isAuthenticated() ")
+    @RequestMapping(value = "/my/cursor", method = RequestMethod.GET)
+    public CursorPage<MobileTransactionDTO> getForUser(Principal principal,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "20") int size,
+                                                       @RequestParam(required = false, defaultValue = "ALL") Direction direction) {
+        return service.getForUser(principal.getName(), cursor, size, direction);
+    }
+
     @PreAuthorize("hasRole('BILLING')")
     @RequestMapping(value = "/filter", method = RequestMethod.GET)
     public Map<String, Object> getFilterOptions() {
@@ -68,8 +126,10 @@ public class TransactionsController {
 
     @PreAuthorize("hasRole('BILLING')")
     @RequestMapping(value = "/filter/autocomplete", method = RequestMethod.GET)
-    public List getAutocompleteOptions(@RequestParam String field) {
-        return autocompleteService.getAutocomplete(field);
+    public List getAutocompleteOptions(@RequestParam String field,
+                                       @RequestParam(required = false) String prefix,
+                                       @RequestParam(defaultValue = "20") int limit) {
+        return autocompleteService.getAutocomplete(field, prefix, limit);
     }
 
     @PreAuthorize("hasRole('BILLING')")
@@ -86,6 +146,75 @@ public class TransactionsController {
         return Base64.getEncoder().encodeToString(bytes);
     }
 
+    /**
+     * All transactions matching filter as xlsx attachment. Page of filter is ignored.
+     */
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/export/file", method = RequestMethod.POST)
+    public void exportFile(@RequestBody GenericFilter<Transaction> filter, HttpServletResponse response) throws IOException {
+        export(filter, ExportFormat.XLSX, false, response);
+    }
+
+    /**
+     * All transactions matching filter streamed in one response as NDJSON or CSV.
+     * Response is gzipped if client accepts it. Page of filter is ignored.
+     */
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/feed", method = RequestMethod.POST)
+    public void feed(@RequestBody GenericFilter<Transaction> filter,
+                     @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+                     @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                     HttpServletResponse response) throws IOException {
+        boolean gzip = format.isCompressible() && acceptEncoding != null && acceptEncoding.contains("gzip");
+        export(filter, format, gzip, response);
+    }
+
+    /**
+     * Queues export of all transactions matching filter to file. Page of filter is ignored.
+     * Export of the same filter and format submitted shortly before is returned instead of new one.
+     */
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/export/jobs", method = RequestMethod.POST)
+    public ExportJob submitExport(@RequestBody GenericFilter<Transaction> filter,
+                                  @RequestParam(defaultValue = "XLSX") ExportFormat format) {
+        return exportJobService.submit(filter, format);
+    }
+
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/export/jobs/{id}", method = RequestMethod.GET)
+    public ExportJob getExport(@PathVariable String id) {
+        return exportJobService.get(id);
+    }
+
+    @PreAuthorize("hasRole('BILLING')")
+    @RequestMapping(value = "/export/jobs/{id}/file", method = RequestMethod.GET)
+    public ResponseEntity<Resource> downloadExport(@PathVariable String id) {
+        ExportJob job = exportJobService.get(id);
+        Resource file = new FileSystemResource(exportJobService.getFile(id).toFile());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + job.getFileName() + "\"")
+                .contentType(MediaType.parseMediaType(job.getFormat().getContentType()))
+                .body(file);
+    }
+
+    private void export(GenericFilter<Transaction> filter, ExportFormat format, boolean gzip,
+                        HttpServletResponse response) throws IOException {
+        // invalid filter is reported as plain error before response is made attachment
+        exportService.check(filter);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions." + format.getExtension() + "\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), GZIP_BUFFER_SIZE);
+            exportService.export(filter, format, out);
+            out.finish();
+        } else {
+            exportService.export(filter, format, response.getOutputStream());
+        }
+    }
+
     public enum Direction {
         IN, OUT, ALL
     }
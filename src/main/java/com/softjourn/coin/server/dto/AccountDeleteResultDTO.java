@@ -0,0 +1,24 @@
+package com.softjourn.coin.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountDeleteResultDTO {
+
+    private String ldapId;
+
+    private boolean deleted;
+
+    /**
+     * Amount of coins moved to treasury before deletion.
+     */
+    private BigDecimal withdrawn;
+
+    private String error;
+}
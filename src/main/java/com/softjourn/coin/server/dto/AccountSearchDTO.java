@@ -0,0 +1,15 @@
+package com.softjourn.coin.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountSearchDTO {
+
+    private String ldap;
+    private String email;
+    private String fullName;
+}
@@ -0,0 +1,20 @@
+package com.softjourn.coin.server.dto;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class AccountStatsDTO {
+
+    private String ldapId;
+
+    private String fullName;
+
+    private BigDecimal sum;
+
+    private Long count;
+}
@@ -0,0 +1,24 @@
+package com.softjourn.coin.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountsDeltaDTO {
+
+    private long version;
+
+    /**
+     * True if requested version is too old to build delta and changed contains whole directory.
+     */
+    private boolean full;
+
+    private List<AccountDTO> changed;
+
+    private List<String> removed;
+}
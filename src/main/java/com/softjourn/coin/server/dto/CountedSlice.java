@@ -0,0 +1,36 @@
+package com.softjourn.coin.server.dto;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.Instant;
+
+/**
+ * Slice with approximate count of all results taken from cache.
+ *
+ * @param <T> type of content
+ */
+public class CountedSlice<T> extends SliceImpl<T> {
+
+    private final Long approximateTotal;
+
+    private final Instant countedAt;
+
+    public CountedSlice(Slice<T> slice, Pageable pageable, Long approximateTotal, Instant countedAt) {
+        super(slice.getContent(), pageable, slice.hasNext());
+        this.approximateTotal = approximateTotal;
+        this.countedAt = countedAt;
+    }
+
+    /**
+     * @return count of all results at the moment of counting or null if it is not counted yet
+     */
+    public Long getApproximateTotal() {
+        return approximateTotal;
+    }
+
+    public Instant getCountedAt() {
+        return countedAt;
+    }
+}
@@ -0,0 +1,40 @@
+package com.softjourn.coin.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Page of results addressed by cursor instead of page number.
+ *
+ * @param <T> type of content
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> content;
+
+    /**
+     * Cursor of the next page or null if this page is the last one.
+     */
+    private String next;
+
+    /**
+     * Count of all results, null if it was not requested.
+     */
+    private Long total;
+
+    public boolean isLast() {
+        return next == null;
+    }
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> converter) {
+        return new CursorPage<>(content.stream().map(converter).collect(Collectors.toList()), next, total);
+    }
+}
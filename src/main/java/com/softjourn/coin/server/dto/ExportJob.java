@@ -0,0 +1,88 @@
+package com.softjourn.coin.server.dto;
+
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.softjourn.coin.server.service.ExportFormat;
+import com.softjourn.coin.server.util.InstantJsonSerializer;
+import lombok.Data;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Export of filtered transactions to file made in background
+ * by {@link com.softjourn.coin.server.service.ExportJobService}.
+ */
+@Data
+public class ExportJob {
+
+    private String id;
+
+    private ExportFormat format;
+
+    private volatile ExportJobStatus status;
+
+    /**
+     * Count of transactions matching filter when job was started.
+     */
+    private volatile Long total;
+
+    private volatile long exported;
+
+    @JsonSerialize(using = InstantJsonSerializer.class)
+    private Instant created;
+
+    @JsonSerialize(using = InstantJsonSerializer.class)
+    private volatile Instant started;
+
+    @JsonSerialize(using = InstantJsonSerializer.class)
+    private volatile Instant finished;
+
+    private volatile String error;
+
+    /**
+     * Normalized filter and format, equal jobs can share result.
+     */
+    @JsonIgnore
+    private String key;
+
+    @JsonIgnore
+    private Path file;
+
+    public static ExportJob queue(String id, String key, ExportFormat format) {
+        ExportJob job = new ExportJob();
+        job.id = id;
+        job.key = key;
+        job.format = format;
+        job.status = ExportJobStatus.QUEUED;
+        job.created = Instant.now();
+        return job;
+    }
+
+    public void start(long total) {
+        this.total = total;
+        this.started = Instant.now();
+        this.status = ExportJobStatus.RUNNING;
+    }
+
+    public void finish(ExportJobStatus status, String error) {
+        this.error = error;
+        this.finished = Instant.now();
+        this.status = status;
+    }
+
+    /**
+     * @return exported part of transactions from 0 to 1
+     */
+    public double getProgress() {
+        if (status == ExportJobStatus.COMPLETED) {
+            return 1;
+        }
+        return total == null || total == 0 ? 0 : Math.min(1, (double) exported / total);
+    }
+
+    public String getFileName() {
+        return "transactions-" + id + "." + format.getExtension();
+    }
+}
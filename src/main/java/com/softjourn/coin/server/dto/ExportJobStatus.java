@@ -0,0 +1,5 @@
+package com.softjourn.coin.server.dto;
+
+public enum ExportJobStatus {
+    QUEUED, RUNNING, COMPLETED, FAILED
+}
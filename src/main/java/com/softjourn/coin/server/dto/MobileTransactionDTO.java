@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.softjourn.coin.server.entity.Account;
 import com.softjourn.coin.server.entity.Transaction;
 import com.softjourn.coin.server.entity.TransactionStatus;
+import com.softjourn.coin.server.entity.TransactionType;
 import com.softjourn.coin.server.util.InstantJsonSerializer;
 import lombok.Data;
 
@@ -13,7 +14,7 @@ import java.time.Instant;
 import java.util.Optional;
 
 @Data
-public class MobileTransactionDTO {
+public class MobileTransactionDTO implements TransactionRow {
 
     private Long id;
 
@@ -36,8 +37,8 @@ public class MobileTransactionDTO {
 
     public MobileTransactionDTO(Transaction transaction) {
         id = transaction.getId();
-        account = Optional.ofNullable(transaction.getAccount()).map(Account::getFullName).orElse("Replenishing.");
-        destination = Optional.ofNullable(transaction.getDestination()).map(Account::getFullName).orElse("Withdrawing.");
+        account = accountName(Optional.ofNullable(transaction.getAccount()).map(Account::getFullName).orElse(null));
+        destination = destinationName(Optional.ofNullable(transaction.getDestination()).map(Account::getFullName).orElse(null));
         amount = transaction.getAmount();
         comment = transaction.getComment();
         created = transaction.getCreated();
@@ -45,4 +46,26 @@ public class MobileTransactionDTO {
         remain = transaction.getRemain();
         error = transaction.getError();
     }
+
+    public MobileTransactionDTO(Long id, String account, String destination, BigDecimal amount, String comment,
+                                Instant created, TransactionStatus status, TransactionType type,
+                                BigDecimal remain, String error, String transactionId) {
+        this.id = id;
+        this.account = accountName(account);
+        this.destination = destinationName(destination);
+        this.amount = amount;
+        this.comment = comment;
+        this.created = created;
+        this.status = status;
+        this.remain = remain;
+        this.error = error;
+    }
+
+    private static String accountName(String fullName) {
+        return Optional.ofNullable(fullName).orElse("Replenishing.");
+    }
+
+    private static String destinationName(String fullName) {
+        return Optional.ofNullable(fullName).orElse("Withdrawing.");
+    }
 }
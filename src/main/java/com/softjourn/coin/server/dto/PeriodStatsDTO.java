@@ -0,0 +1,42 @@
+package com.softjourn.coin.server.dto;
+
+
+import com.softjourn.coin.server.entity.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sums of successful transactions of one type made in period by all accounts.
+ * Each transfer between accounts is counted as out for sender and as in for receiver.
+ */
+@Data
+@AllArgsConstructor
+public class PeriodStatsDTO {
+
+    /**
+     * Day (yyyy-MM-dd) or month (yyyy-MM).
+     */
+    private String period;
+
+    private TransactionType type;
+
+    private BigDecimal inSum;
+
+    private long inCount;
+
+    private BigDecimal outSum;
+
+    private long outCount;
+
+    public PeriodStatsDTO(LocalDate day, TransactionType type, BigDecimal inSum, Long inCount, BigDecimal outSum, Long outCount) {
+        this(day.toString(), type, inSum, inCount, outSum, outCount);
+    }
+
+    public PeriodStatsDTO add(PeriodStatsDTO other) {
+        return new PeriodStatsDTO(period, type, inSum.add(other.inSum), inCount + other.inCount,
+                outSum.add(other.outSum), outCount + other.outCount);
+    }
+}
@@ -0,0 +1,47 @@
+package com.softjourn.coin.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position in transactions ordered by (created, id).
+ * Passed to clients as opaque string.
+ */
+@Data
+@AllArgsConstructor
+public class TransactionCursor {
+
+    private Instant created;
+
+    private Long id;
+
+    public static TransactionCursor of(TransactionRow transaction) {
+        return new TransactionCursor(transaction.getCreated(), transaction.getId());
+    }
+
+    public String encode() {
+        String value = created.getEpochSecond() + ":" + created.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if cursor is malformed
+     */
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Wrong cursor " + cursor);
+            }
+            Instant created = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new TransactionCursor(created, Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IllegalArgumentException("Wrong cursor " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.softjourn.coin.server.dto;
+
+
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.softjourn.coin.server.entity.TransactionStatus;
+import com.softjourn.coin.server.entity.TransactionType;
+import com.softjourn.coin.server.util.InstantJsonSerializer;
+import com.softjourn.coin.server.util.JsonViews;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Transaction in admin listings. Serialized the same way as
+ * {@link com.softjourn.coin.server.entity.Transaction}, accounts are written as full names.
+ */
+@Data
+@NoArgsConstructor
+public class TransactionDTO implements TransactionRow {
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private Long id;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private String account;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private String destination;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private BigDecimal amount;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private String comment;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    @JsonSerialize(using = InstantJsonSerializer.class)
+    private Instant created;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private TransactionStatus status;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private TransactionType type;
+
+    @JsonView({JsonViews.DETAILED.class, JsonViews.REGULAR.class})
+    private String error;
+
+    @JsonView(JsonViews.DETAILED.class)
+    private String transactionId;
+
+    public TransactionDTO(Long id, String account, String destination, BigDecimal amount, String comment,
+                          Instant created, TransactionStatus status, TransactionType type,
+                          BigDecimal remain, String error, String transactionId) {
+        this.id = id;
+        this.account = account;
+        this.destination = destination;
+        this.amount = amount;
+        this.comment = comment;
+        this.created = created;
+        this.status = status;
+        this.type = type;
+        this.error = error;
+        this.transactionId = transactionId;
+    }
+}
@@ -0,0 +1,17 @@
+package com.softjourn.coin.server.dto;
+
+import java.time.Instant;
+
+/**
+ * Transaction read by projection query.
+ *
+ * Implementations should have public constructor with columns selected by
+ * {@link com.softjourn.coin.server.repository.TransactionRepositoryCustom}:
+ * (id, account name, destination name, amount, comment, created, status, type, remain, error, transactionId).
+ */
+public interface TransactionRow {
+
+    Long getId();
+
+    Instant getCreated();
+}
@@ -1,6 +1,7 @@
 package com.softjourn.coin.server.entity;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.softjourn.coin.server.service.FilterIgnore;
@@ -45,6 +46,10 @@ public class Account {
 
     private boolean deleted;
 
+    @JsonIgnore
+    @FilterIgnore
+    private long version;
+
     public Account(String ldapId, String email, BigDecimal amount) {
         this.amount = amount;
         this.email = email;
@@ -0,0 +1,56 @@
+package com.softjourn.coin.server.entity;
+
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sums of successful transactions of account of one type made in one day.
+ * In are transactions where account is destination, out are where it is sender.
+ */
+@Data
+@Entity
+@IdClass(AccountDailyStats.Key.class)
+@Table(name = "account_daily_stats")
+public class AccountDailyStats {
+
+    @Id
+    @Column(name = "account_id")
+    private String ldapId;
+
+    @Id
+    @JsonSerialize(using = ToStringSerializer.class)
+    private LocalDate day;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    private TransactionType type;
+
+    private BigDecimal inSum;
+
+    private long inCount;
+
+    private BigDecimal outSum;
+
+    private long outCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private String ldapId;
+
+        private LocalDate day;
+
+        private TransactionType type;
+    }
+}
@@ -0,0 +1,31 @@
+package com.softjourn.coin.server.entity;
+
+
+import lombok.Data;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Single row holding version of accounts directory.
+ *
+ * Version is incremented on every change of accounts and stored to changed accounts,
+ * so clients can ask for accounts changed since version they already have.
+ * Accounts removed physically can't be tracked, so resyncVersion is moved forward
+ * on such removal and clients with older version have to load whole directory.
+ */
+@Data
+@Entity
+@Table(name = "account_directory")
+public class AccountDirectory {
+
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+
+    private long version;
+
+    private long resyncVersion;
+}
@@ -0,0 +1,28 @@
+package com.softjourn.coin.server.entity;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "account_images")
+public class AccountImage {
+
+    @Id
+    @Column(name = "account_id")
+    private String ldapId;
+
+    private String hash;
+
+    private Instant updated;
+}
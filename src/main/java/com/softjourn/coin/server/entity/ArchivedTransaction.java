@@ -0,0 +1,62 @@
+package com.softjourn.coin.server.entity;
+
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Transaction moved from transactions table to archive. Has the same fields as {@link Transaction},
+ * so transactions filters can be applied to archive too. Id is kept from transactions table.
+ */
+@Data
+@Entity
+@Table(name = "transactions_archive")
+public class ArchivedTransaction {
+
+    @Id
+    private Long id;
+
+    @ManyToOne
+    private Account account;
+
+    @ManyToOne
+    private Account destination;
+
+    private BigDecimal amount;
+
+    @Column(columnDefinition = "text")
+    private String comment;
+
+    private Instant created;
+
+    @Enumerated(EnumType.STRING)
+    private TransactionStatus status;
+
+    @Enumerated(EnumType.STRING)
+    private TransactionType type;
+
+    private BigDecimal remain;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    private String transactionId;
+
+    public Transaction toTransaction() {
+        Transaction transaction = new Transaction(transactionId);
+        transaction.setId(id);
+        transaction.setAccount(account);
+        transaction.setDestination(destination);
+        transaction.setAmount(amount);
+        transaction.setComment(comment);
+        transaction.setCreated(created);
+        transaction.setStatus(status);
+        transaction.setType(type);
+        transaction.setRemain(remain);
+        transaction.setError(error);
+        return transaction;
+    }
+}
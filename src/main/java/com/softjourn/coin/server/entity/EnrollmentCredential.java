@@ -0,0 +1,34 @@
+package com.softjourn.coin.server.entity;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Token received on enrollment of user in Fabric.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "enrollment_credentials")
+public class EnrollmentCredential {
+
+    @Id
+    private String email;
+
+    @Column(columnDefinition = "text")
+    private String token;
+
+    private Instant expires;
+
+    private Instant updated;
+
+    public boolean isValid(Instant at) {
+        return token != null && expires != null && expires.isAfter(at);
+    }
+}
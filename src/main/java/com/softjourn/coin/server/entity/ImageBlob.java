@@ -0,0 +1,40 @@
+package com.softjourn.coin.server.entity;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Image stored on disk under name derived from SHA-256 of its content.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "image_blobs")
+public class ImageBlob {
+
+    @Id
+    private String hash;
+
+    private String extension;
+
+    private long size;
+
+    private Instant created;
+
+    /**
+     * Time blob was referenced last time. Recently referenced blobs are never swept.
+     */
+    private Instant updated;
+
+    public String getName() {
+        return hash + "." + extension;
+    }
+}
@@ -0,0 +1,79 @@
+package com.softjourn.coin.server.entity;
+
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.softjourn.coin.server.util.InstantJsonSerializer;
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Progress of accounts re-enrollment started by {@link com.softjourn.coin.server.service.AccountsResetService}.
+ *
+ * Accounts are processed in ldapId order, so lastLdapId is a cursor
+ * the interrupted job is resumed from.
+ */
+@Data
+@Entity
+@Table(name = "reset_jobs")
+public class ResetJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private ResetJobStatus status;
+
+    private String lastLdapId;
+
+    private long processed;
+
+    private long failed;
+
+    @JsonSerialize(using = InstantJsonSerializer.class)
+    private Instant started;
+
+    @JsonSerialize(using = InstantJsonSerializer.class)
+    private Instant updated;
+
+    @JsonSerialize(using = InstantJsonSerializer.class)
+    private Instant finished;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    public static ResetJob start() {
+        ResetJob job = new ResetJob();
+        job.status = ResetJobStatus.RUNNING;
+        job.started = Instant.now();
+        job.updated = job.started;
+        return job;
+    }
+
+    public void advance(String lastLdapId, long processed, long failed) {
+        this.lastLdapId = lastLdapId;
+        this.processed += processed;
+        this.failed += failed;
+        this.updated = Instant.now();
+    }
+
+    public void finish(ResetJobStatus status, String error) {
+        this.status = status;
+        this.error = error;
+        this.updated = Instant.now();
+        this.finished = updated;
+    }
+
+    /**
+     * @return average number of processed accounts per second
+     */
+    public double getThroughput() {
+        Instant end = Optional.ofNullable(finished).orElseGet(Instant::now);
+        long millis = Duration.between(started, end).toMillis();
+        return millis > 0 ? (processed + failed) * 1000.0 / millis : 0;
+    }
+}
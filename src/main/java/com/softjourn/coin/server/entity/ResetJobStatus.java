@@ -0,0 +1,5 @@
+package com.softjourn.coin.server.entity;
+
+public enum ResetJobStatus {
+    RUNNING, COMPLETED, FAILED
+}
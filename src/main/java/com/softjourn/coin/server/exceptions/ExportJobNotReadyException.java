@@ -0,0 +1,8 @@
+package com.softjourn.coin.server.exceptions;
+
+public class ExportJobNotReadyException extends RuntimeException {
+
+    public ExportJobNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.softjourn.coin.server.exceptions;
+
+public class ExportQueueFullException extends RuntimeException {
+
+    public ExportQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.softjourn.coin.server.exceptions;
+
+public class FileTooLargeException extends RuntimeException {
+
+    public FileTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,89 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.dto.AccountStatsDTO;
+import com.softjourn.coin.server.dto.PeriodStatsDTO;
+import com.softjourn.coin.server.entity.AccountDailyStats;
+import com.softjourn.coin.server.entity.TransactionType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AccountDailyStatsRepository extends JpaRepository<AccountDailyStats, AccountDailyStats.Key> {
+
+    /**
+     * Adds sums and counts to stats row creating it if needed.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO account_daily_stats (account_id, type, day, in_sum, in_count, out_sum, out_count) " +
+            "VALUES (:ldapId, :type, :day, :inSum, :inCount, :outSum, :outCount) " +
+            "ON DUPLICATE KEY UPDATE in_sum = in_sum + VALUES(in_sum), in_count = in_count + VALUES(in_count), " +
+            "out_sum = out_sum + VALUES(out_sum), out_count = out_count + VALUES(out_count)",
+            nativeQuery = true)
+    int add(@Param("ldapId") String ldapId, @Param("type") String type, @Param("day") LocalDate day,
+            @Param("inSum") BigDecimal inSum, @Param("inCount") long inCount,
+            @Param("outSum") BigDecimal outSum, @Param("outCount") long outCount);
+
+    @Modifying
+    @Query("DELETE FROM AccountDailyStats s WHERE s.day = :day")
+    int deleteByDay(@Param("day") LocalDate day);
+
+    /**
+     * Recalculates stats of one day from transactions created in [from, to), both of transactions and archive tables.
+     * Rows written meanwhile by {@link #add} are overwritten, as transactions they count are selected too.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO account_daily_stats (account_id, type, day, in_sum, in_count, out_sum, out_count) " +
+            "SELECT t.account_id, t.type, :day, SUM(t.in_sum), SUM(t.in_count), SUM(t.out_sum), SUM(t.out_count) FROM (" +
+            "  SELECT account_ldap_id AS account_id, COALESCE(type, 'UNKNOWN') AS type, " +
+            "    0 AS in_sum, 0 AS in_count, COALESCE(amount, 0) AS out_sum, 1 AS out_count " +
+            "  FROM transactions WHERE status = 'SUCCESS' AND account_ldap_id IS NOT NULL AND created >= :from AND created < :to " +
+            "  UNION ALL " +
+            "  SELECT destination_ldap_id, COALESCE(type, 'UNKNOWN'), COALESCE(amount, 0), 1, 0, 0 " +
+            "  FROM transactions WHERE status = 'SUCCESS' AND destination_ldap_id IS NOT NULL AND created >= :from AND created < :to" +
+            "  UNION ALL " +
+            "  SELECT account_ldap_id, COALESCE(type, 'UNKNOWN'), 0, 0, COALESCE(amount, 0), 1 " +
+            "  FROM transactions_archive WHERE status = 'SUCCESS' AND account_ldap_id IS NOT NULL AND created >= :from AND created < :to " +
+            "  UNION ALL " +
+            "  SELECT destination_ldap_id, COALESCE(type, 'UNKNOWN'), COALESCE(amount, 0), 1, 0, 0 " +
+            "  FROM transactions_archive WHERE status = 'SUCCESS' AND destination_ldap_id IS NOT NULL AND created >= :from AND created < :to" +
+            ") t GROUP BY t.account_id, t.type " +
+            "ON DUPLICATE KEY UPDATE in_sum = VALUES(in_sum), in_count = VALUES(in_count), " +
+            "out_sum = VALUES(out_sum), out_count = VALUES(out_count)",
+            nativeQuery = true)
+    int rebuildDay(@Param("day") LocalDate day, @Param("from") Instant from, @Param("to") Instant to);
+
+    @Query("SELECT s FROM AccountDailyStats s WHERE s.ldapId = :ldapId AND s.day BETWEEN :from AND :to " +
+            "AND s.type IN (:types) ORDER BY s.day, s.type")
+    List<AccountDailyStats> findByAccount(@Param("ldapId") String ldapId, @Param("from") LocalDate from,
+                                          @Param("to") LocalDate to, @Param("types") Collection<TransactionType> types);
+
+    @Query("SELECT new com.softjourn.coin.server.dto.PeriodStatsDTO(s.day, s.type, " +
+            "SUM(s.inSum), SUM(s.inCount), SUM(s.outSum), SUM(s.outCount)) " +
+            "FROM AccountDailyStats s WHERE s.day BETWEEN :from AND :to AND s.type IN (:types) " +
+            "GROUP BY s.day, s.type ORDER BY s.day, s.type")
+    List<PeriodStatsDTO> findTotals(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                    @Param("types") Collection<TransactionType> types);
+
+    @Query("SELECT new com.softjourn.coin.server.dto.AccountStatsDTO(a.ldapId, a.fullName, SUM(s.inSum), SUM(s.inCount)) " +
+            "FROM AccountDailyStats s, Account a WHERE a.ldapId = s.ldapId AND s.day BETWEEN :from AND :to " +
+            "AND s.type IN (:types) GROUP BY a.ldapId, a.fullName HAVING SUM(s.inCount) > 0 ORDER BY SUM(s.inSum) DESC")
+    List<AccountStatsDTO> findTopReceivers(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                           @Param("types") Collection<TransactionType> types, Pageable pageable);
+
+    @Query("SELECT new com.softjourn.coin.server.dto.AccountStatsDTO(a.ldapId, a.fullName, SUM(s.outSum), SUM(s.outCount)) " +
+            "FROM AccountDailyStats s, Account a WHERE a.ldapId = s.ldapId AND s.day BETWEEN :from AND :to " +
+            "AND s.type IN (:types) GROUP BY a.ldapId, a.fullName HAVING SUM(s.outCount) > 0 ORDER BY SUM(s.outSum) DESC")
+    List<AccountStatsDTO> findTopSenders(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                         @Param("types") Collection<TransactionType> types, Pageable pageable);
+}
@@ -0,0 +1,23 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.entity.AccountDirectory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AccountDirectoryRepository extends JpaRepository<AccountDirectory, Integer> {
+
+    @Query("SELECT d.version FROM AccountDirectory d WHERE d.id = 1")
+    long getVersion();
+
+    @Modifying
+    @Query("UPDATE AccountDirectory d SET d.version = d.version + 1 WHERE d.id = 1")
+    int incrementVersion();
+
+    @Modifying
+    @Query("UPDATE AccountDirectory d SET d.resyncVersion = d.version + 1, d.version = d.version + 1 WHERE d.id = 1")
+    int incrementVersionWithResync();
+}
@@ -0,0 +1,10 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.entity.AccountImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AccountImageRepository extends JpaRepository<AccountImage, String> {
+}
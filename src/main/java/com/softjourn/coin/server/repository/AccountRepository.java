@@ -3,6 +3,7 @@ package com.softjourn.coin.server.repository;
 
 import com.softjourn.coin.server.entity.Account;
 import com.softjourn.coin.server.entity.AccountType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -30,11 +31,22 @@ public interface AccountRepository extends JpaRepository<Account, String> {
     @Query("SELECT a FROM Account a WHERE a.fullName = ?1 AND a.deleted = FALSE")
     Account findOneByFullNameUndeleted(String fullName);
 
+    @Query("SELECT a FROM Account a WHERE a.ldapId > :ldapId ORDER BY a.ldapId")
+    List<Account> findAllAfter(@Param("ldapId") String ldapId, Pageable pageable);
+
+    @Query("SELECT a FROM Account a WHERE a.version > :version")
+    List<Account> findChangedSince(@Param("version") long version);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.deleted = :isDeleted, a.version = :version WHERE a.ldapId = :ldapId")
+    int updateIsDeletedByLdapId(@Param("ldapId") String ldapId, @Param("isDeleted") boolean isDeleted,
+                                @Param("version") long version);
+
     @Modifying
-    @Query("UPDATE Account a SET a.deleted = :isDeleted WHERE a.ldapId = :ldapId")
-    int updateIsDeletedByLdapId(@Param("ldapId") String ldapId, @Param("isDeleted") boolean isDeleted);
+    @Query("UPDATE Account a SET a.deleted = true, a.version = :version WHERE a.ldapId IN (:ids)")
+    int markDeleted(@Param("ids") List<String> ids, @Param("version") long version);
 
     @Modifying
-    @Query("UPDATE Account a SET a.isNew = :isNew WHERE a.ldapId IN (:ids)")
-    int changeIsNewStatus(@Param("isNew") Boolean isNew, @Param("ids") List<String> ids);
+    @Query("UPDATE Account a SET a.isNew = :isNew, a.version = :version WHERE a.ldapId IN (:ids)")
+    int changeIsNewStatus(@Param("isNew") Boolean isNew, @Param("ids") List<String> ids, @Param("version") long version);
 }
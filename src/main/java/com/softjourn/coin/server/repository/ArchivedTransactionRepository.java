@@ -0,0 +1,32 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.entity.ArchivedTransaction;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+
+public interface ArchivedTransactionRepository extends CrudRepository<ArchivedTransaction, Long> {
+
+    @Query("SELECT MIN(t.created) FROM ArchivedTransaction t")
+    Instant findFirstCreated();
+
+    @Query("SELECT MAX(t.created) FROM ArchivedTransaction t")
+    Instant findLastCreated();
+
+    /**
+     * Copies transactions to archive, they should be deleted from transactions table in the same DB transaction.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO transactions_archive (id, account_ldap_id, destination_ldap_id, amount, comment, " +
+            "created, status, type, remain, error, transaction_id) " +
+            "SELECT id, account_ldap_id, destination_ldap_id, amount, comment, " +
+            "created, status, type, remain, error, transaction_id " +
+            "FROM transactions WHERE id IN (:ids)",
+            nativeQuery = true)
+    int copyFromTransactions(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,16 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.entity.EnrollmentCredential;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EnrollmentCredentialRepository extends JpaRepository<EnrollmentCredential, String> {
+
+    List<EnrollmentCredential> findByEmailInAndExpiresAfter(Collection<String> emails, Instant time);
+}
@@ -0,0 +1,38 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.entity.ImageBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+
+    /**
+     * Locks blob row, so blob can't be stored and swept at the same time.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM ImageBlob b WHERE b.hash = :hash")
+    ImageBlob findOneForUpdate(@Param("hash") String hash);
+
+    @Query("SELECT b FROM ImageBlob b WHERE b.updated < :before " +
+            "AND NOT EXISTS (SELECT i FROM AccountImage i WHERE i.hash = b.hash)")
+    List<ImageBlob> findUnreferenced(@Param("before") Instant before, Pageable pageable);
+
+    /**
+     * Deletes blob if it is still unreferenced, so blob referenced again meanwhile is kept.
+     */
+    @Modifying
+    @Query("DELETE FROM ImageBlob b WHERE b.hash = :hash AND b.updated < :before " +
+            "AND NOT EXISTS (SELECT i FROM AccountImage i WHERE i.hash = :hash)")
+    int deleteIfUnreferenced(@Param("hash") String hash, @Param("before") Instant before);
+}
@@ -0,0 +1,15 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.entity.ResetJob;
+import com.softjourn.coin.server.entity.ResetJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ResetJobRepository extends JpaRepository<ResetJob, Long> {
+
+    ResetJob findFirstByStatusOrderByIdDesc(ResetJobStatus status);
+
+    ResetJob findFirstByOrderByIdDesc();
+}
@@ -2,13 +2,35 @@ package com.softjourn.coin.server.repository;
 
 
 import com.softjourn.coin.server.entity.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
-public interface TransactionRepository extends CrudRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
+
+public interface TransactionRepository extends CrudRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction>,
+        TransactionRepositoryCustom {
 
     @Override
     <T extends Transaction> T save(T transaction);
 
+    @Query("SELECT DISTINCT a.email FROM Transaction t JOIN t.account a WHERE t.created > :since AND a.email IS NOT NULL")
+    List<String> findActiveAccountsEmails(@Param("since") Instant since);
+
+    @Query("SELECT MIN(t.created) FROM Transaction t")
+    Instant findFirstCreated();
+
+    @Query("SELECT t.id FROM Transaction t WHERE t.created < :before ORDER BY t.created, t.id")
+    List<Long> findIdsCreatedBefore(@Param("before") Instant before, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Transaction t WHERE t.id IN (:ids)")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
 }
@@ -0,0 +1,100 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.dto.TransactionCursor;
+import com.softjourn.coin.server.dto.TransactionRow;
+import com.softjourn.coin.server.entity.Transaction;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Listings of transactions. Rows are read by one statement with account names joined
+ * and mapped directly to passed type, see {@link TransactionRow}.
+ * Archived transactions are included when filter can match them, see {@link TransactionRepositoryImpl}.
+ */
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Page of transactions. Count query is skipped when total is known from the page itself.
+     *
+     * @param spec     filter, may be null
+     * @param pageable page and sort
+     * @param type     type of rows
+     */
+    <R extends TransactionRow> Page<R> findRows(Specification<Transaction> spec, Pageable pageable, Class<R> type);
+
+    /**
+     * Count of transactions including archived ones.
+     *
+     * @param spec filter, may be null
+     */
+    long countRows(Specification<Transaction> spec);
+
+    /**
+     * Builds query of filter and sort without running it.
+     *
+     * @throws IllegalArgumentException if filter or sort can't be applied to transactions,
+     *                                  or filter reaches archived rows and sort is not by created, see {@link #scroll}
+     */
+    void checkQuery(Specification<Transaction> spec, Sort sort);
+
+    /**
+     * Reads all matching transactions by forward only cursor streamed from DB row by row.
+     * Should be called in transaction, connection is held till all rows are consumed.
+     * If filter reaches archived rows, rows of both tables are merged by created, other orders are rejected.
+     *
+     * @param spec     filter, may be null
+     * @param sort     order of rows, may be null
+     * @param type     type of rows
+     * @param consumer consumer of rows
+     * @return count of read rows
+     * @throws IllegalArgumentException if archived rows are reached and sort is not by created
+     */
+    <R extends TransactionRow> long scroll(Specification<Transaction> spec, Sort sort, Class<R> type, Consumer<R> consumer);
+
+    /**
+     * Seeks transactions ordered by (created, id) starting right after cursor.
+     *
+     * @param spec      filter, may be null
+     * @param cursor    position of the last seen transaction or null for the first page
+     * @param direction order of transactions
+     * @param limit     max count of transactions
+     * @param type      type of rows
+     * @return transactions after cursor
+     */
+    <R extends TransactionRow> List<R> findAfter(Specification<Transaction> spec, TransactionCursor cursor,
+                                                 Sort.Direction direction, int limit, Class<R> type);
+
+    /**
+     * Page of transactions without count query. One extra row is read to know whether next slice exists.
+     *
+     * @param spec     filter, may be null
+     * @param pageable page and sort
+     * @param type     type of rows
+     */
+    <R extends TransactionRow> Slice<R> findSlice(Specification<Transaction> spec, Pageable pageable, Class<R> type);
+
+    /**
+     * Transactions where user is sender or receiver. Each side is read separately
+     * by (column, created) index and results are merged.
+     *
+     * @param ldapId   user
+     * @param pageable page, sort may be only by created and id
+     * @param type     type of rows
+     */
+    <R extends TransactionRow> Page<R> findHistory(String ldapId, Pageable pageable, Class<R> type);
+
+    /**
+     * Transactions where user is sender or receiver after cursor.
+     *
+     * @see #findAfter(Specification, TransactionCursor, Sort.Direction, int, Class)
+     */
+    <R extends TransactionRow> List<R> findHistoryAfter(String ldapId, TransactionCursor cursor,
+                                                        Sort.Direction direction, int limit, Class<R> type);
+}
@@ -0,0 +1,537 @@
+package com.softjourn.coin.server.repository;
+
+
+import com.softjourn.coin.server.dto.TransactionCursor;
+import com.softjourn.coin.server.dto.TransactionDTO;
+import com.softjourn.coin.server.dto.TransactionRow;
+import com.softjourn.coin.server.entity.Account;
+import com.softjourn.coin.server.entity.ArchivedTransaction;
+import com.softjourn.coin.server.entity.Transaction;
+import com.softjourn.coin.server.service.GenericFilter;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.ReflectionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Listings read transactions table and archive table only when filter can match archived rows, i.e. when
+ * it has no lower bound of created or the bound is not after the last archived transaction.
+ * Both tables are read in one DB transaction, so rows being archived meanwhile are seen once.
+ */
+@SuppressWarnings("unchecked")
+@Transactional(readOnly = true)
+public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
+
+    private static final int SCROLL_CHUNK_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public <R extends TransactionRow> Page<R> findRows(Specification<Transaction> spec, Pageable pageable, Class<R> type) {
+        Sort sort = normalize(pageable.getSort());
+        if (!reachesArchive(spec, getLastArchived())) {
+            List<R> content = find(Transaction.class, spec, sort, type)
+                    .setFirstResult(pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize())
+                    .getResultList();
+            return new PageImpl<>(content, pageable, getTotal(content, pageable, () -> count(Transaction.class, spec)));
+        }
+        List<R> rows = findBoth(spec, sort, pageable.getOffset() + pageable.getPageSize(), type);
+        List<R> content = rows.subList(Math.min(pageable.getOffset(), rows.size()), rows.size());
+        return new PageImpl<>(content, pageable, getTotal(content, pageable, () -> countRows(spec)));
+    }
+
+    @Override
+    public long countRows(Specification<Transaction> spec) {
+        long count = count(Transaction.class, spec);
+        return reachesArchive(spec, getLastArchived()) ? count + count(ArchivedTransaction.class, spec) : count;
+    }
+
+    @Override
+    public void checkQuery(Specification<Transaction> spec, Sort sort) {
+        Sort order = normalize(sort);
+        if (reachesArchive(spec, getLastArchived())) {
+            getScrollDirection(order);
+        }
+        find(Transaction.class, spec, order, TransactionDTO.class);
+    }
+
+    @Override
+    public <R extends TransactionRow> long scroll(Specification<Transaction> spec, Sort sort, Class<R> type, Consumer<R> consumer) {
+        Sort order = normalize(sort);
+        if (!reachesArchive(spec, getLastArchived())) {
+            return scroll(Transaction.class, spec, order, type, consumer);
+        }
+        return scrollBoth(spec, getScrollDirection(order), type, consumer);
+    }
+
+    /**
+     * Streams rows of both tables merged by (created, id). Only one streamed result set can be open
+     * on connection, so each table is read by chunks after its last read row instead of by cursor.
+     */
+    private <R extends TransactionRow> long scrollBoth(Specification<Transaction> spec, Sort.Direction direction,
+                                                       Class<R> type, Consumer<R> consumer) {
+        Comparator<TransactionRow> order = getOrder(direction);
+        Chunks<R> rows = new Chunks<>(Transaction.class, spec, direction, type);
+        Chunks<R> archived = new Chunks<>(ArchivedTransaction.class, spec, direction, type);
+        long count = 0;
+        while (rows.hasNext() || archived.hasNext()) {
+            boolean fromRows = !archived.hasNext() || (rows.hasNext() && order.compare(rows.peek(), archived.peek()) <= 0);
+            consumer.accept(fromRows ? rows.next() : archived.next());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Rows of both tables can be streamed in order of (created, id) only, see {@link #scrollBoth}.
+     *
+     * @throws IllegalArgumentException if sort is not by created
+     */
+    private static Sort.Direction getScrollDirection(Sort sort) {
+        Sort.Order created = sort.getOrderFor("created");
+        Sort.Order id = sort.getOrderFor("id");
+        List<Sort.Order> orders = new ArrayList<>();
+        sort.forEach(orders::add);
+        if (orders.size() != 2 || created == null || orders.get(0) != created || created.getDirection() != id.getDirection()) {
+            throw new IllegalArgumentException("Transactions including archived ones can be exported sorted by created only.");
+        }
+        return created.getDirection();
+    }
+
+    @Override
+    public <R extends TransactionRow> List<R> findAfter(Specification<Transaction> spec, TransactionCursor cursor,
+                                                        Sort.Direction direction, int limit, Class<R> type) {
+        Instant lastArchived = getLastArchived();
+        List<R> rows = findAfter(Transaction.class, spec, cursor, direction, limit, type);
+        if (!reachesArchive(spec, lastArchived) || isBeforeArchive(rows, direction, limit, lastArchived)) {
+            return rows;
+        }
+        List<R> archived = findAfter(ArchivedTransaction.class, spec, cursor, direction, limit, type);
+        return merge(rows, archived, getOrder(direction), limit);
+    }
+
+    @Override
+    public <R extends TransactionRow> Slice<R> findSlice(Specification<Transaction> spec, Pageable pageable, Class<R> type) {
+        Sort sort = normalize(pageable.getSort());
+        List<R> content;
+        if (!reachesArchive(spec, getLastArchived())) {
+            content = find(Transaction.class, spec, sort, type)
+                    .setFirstResult(pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize() + 1)
+                    .getResultList();
+        } else {
+            List<R> rows = findBoth(spec, sort, pageable.getOffset() + pageable.getPageSize() + 1, type);
+            content = rows.subList(Math.min(pageable.getOffset(), rows.size()), rows.size());
+        }
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public <R extends TransactionRow> Page<R> findHistory(String ldapId, Pageable pageable, Class<R> type) {
+        Sort.Direction direction = Optional.ofNullable(pageable.getSort())
+                .map(sort -> Optional.ofNullable(sort.getOrderFor("created")).orElse(sort.getOrderFor("id")))
+                .map(Sort.Order::getDirection)
+                .orElse(Sort.Direction.DESC);
+        int limit = pageable.getOffset() + pageable.getPageSize();
+        Instant lastArchived = getLastArchived();
+        List<R> history = findHistoryAfter(ldapId, null, direction, limit, type, lastArchived);
+
+        int from = Math.min(pageable.getOffset(), history.size());
+        long total = countHistory(Transaction.class, ldapId)
+                + (lastArchived == null ? 0 : countHistory(ArchivedTransaction.class, ldapId));
+        return new PageImpl<>(history.subList(from, history.size()), pageable, total);
+    }
+
+    @Override
+    public <R extends TransactionRow> List<R> findHistoryAfter(String ldapId, TransactionCursor cursor,
+                                                               Sort.Direction direction, int limit, Class<R> type) {
+        return findHistoryAfter(ldapId, cursor, direction, limit, type, getLastArchived());
+    }
+
+    /**
+     * History of user has no date range, so archive is read only when rows of transactions table
+     * are not enough to fill the page.
+     */
+    private <R extends TransactionRow> List<R> findHistoryAfter(String ldapId, TransactionCursor cursor, Sort.Direction direction,
+                                                                int limit, Class<R> type, Instant lastArchived) {
+        List<R> history = findHistoryAfter(Transaction.class, ldapId, cursor, direction, limit, type);
+        if (lastArchived == null || isBeforeArchive(history, direction, limit, lastArchived)) {
+            return history;
+        }
+        List<R> archived = findHistoryAfter(ArchivedTransaction.class, ldapId, cursor, direction, limit, type);
+        return merge(history, archived, getOrder(direction), limit);
+    }
+
+    private <R extends TransactionRow> List<R> findHistoryAfter(Class<?> entity, String ldapId, TransactionCursor cursor,
+                                                                Sort.Direction direction, int limit, Class<R> type) {
+        List<R> sent = findAfter(entity, side("account", ldapId), cursor, direction, limit, type);
+        List<R> received = findAfter(entity, side("destination", ldapId), cursor, direction, limit, type);
+        return merge(sent, received, getOrder(direction), limit);
+    }
+
+    private <R extends TransactionRow> List<R> findAfter(Class<?> entity, Specification<Transaction> spec, TransactionCursor cursor,
+                                                         Sort.Direction direction, int limit, Class<R> type) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<R> query = builder.createQuery(type);
+        Root<?> root = select(entity, query, type, builder);
+        Path<Instant> created = root.get("created");
+        Path<Long> id = root.get("id");
+
+        List<Predicate> predicates = toPredicates(spec, root, query, builder);
+        if (cursor != null) {
+            predicates.add(seek(builder, created, id, cursor, direction));
+        }
+
+        query.where(predicates.toArray(new Predicate[predicates.size()]));
+        if (direction == Sort.Direction.ASC) {
+            query.orderBy(builder.asc(created), builder.asc(id));
+        } else {
+            query.orderBy(builder.desc(created), builder.desc(id));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * The first rows of both tables merged. Sort should be normalized, so both tables are read in total order
+     * and merge of their first rows is exactly the first rows of union.
+     */
+    private <R extends TransactionRow> List<R> findBoth(Specification<Transaction> spec, Sort sort, int limit, Class<R> type) {
+        List<R> rows = find(Transaction.class, spec, sort, type).setMaxResults(limit).getResultList();
+        List<R> archived = find(ArchivedTransaction.class, spec, sort, type).setMaxResults(limit).getResultList();
+        return merge(rows, archived, getOrder(sort, type), limit);
+    }
+
+    private <R extends TransactionRow> long scroll(Class<?> entity, Specification<Transaction> spec, Sort sort,
+                                                   Class<R> type, Consumer<R> consumer) {
+        Query query = find(entity, spec, sort, type).unwrap(Query.class)
+                .setReadOnly(true)
+                // MySQL driver streams result set only with this fetch size
+                .setFetchSize(Integer.MIN_VALUE);
+        long count = 0;
+        ScrollableResults rows = query.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (rows.next()) {
+                consumer.accept((R) rows.get(0));
+                count++;
+            }
+        } finally {
+            rows.close();
+        }
+        return count;
+    }
+
+    private <R> TypedQuery<R> find(Class<?> entity, Specification<Transaction> spec, Sort sort, Class<R> type) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<R> query = builder.createQuery(type);
+        Root<?> root = select(entity, query, type, builder);
+
+        List<Predicate> predicates = toPredicates(spec, root, query, builder);
+        query.where(predicates.toArray(new Predicate[predicates.size()]));
+        if (sort != null) {
+            query.orderBy(QueryUtils.toOrders(sort, root, builder));
+        }
+        return entityManager.createQuery(query);
+    }
+
+    /**
+     * Selects row columns into constructor of type. Accounts are left joined, so only their names are read
+     * instead of loading both accounts of every transaction by separate statements.
+     */
+    private static <R> Root<?> select(Class<?> entity, CriteriaQuery<R> query, Class<R> type, CriteriaBuilder builder) {
+        Root<?> root = query.from(entity);
+        Join<?, Account> account = root.join("account", JoinType.LEFT);
+        Join<?, Account> destination = root.join("destination", JoinType.LEFT);
+        query.select(builder.construct(type,
+                root.get("id"),
+                account.get("fullName"),
+                destination.get("fullName"),
+                root.get("amount"),
+                root.get("comment"),
+                root.get("created"),
+                root.get("status"),
+                root.get("type"),
+                root.get("remain"),
+                root.get("error"),
+                root.get("transactionId")));
+        return root;
+    }
+
+    private long count(Class<?> entity, Specification<Transaction> spec) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<?> root = query.from(entity);
+
+        List<Predicate> predicates = toPredicates(spec, root, query, builder);
+        query.select(builder.count(root)).where(predicates.toArray(new Predicate[predicates.size()]));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private long countHistory(Class<?> entity, String ldapId) {
+        String from = "SELECT COUNT(t) FROM " + entity.getSimpleName() + " t WHERE ";
+        return count(from + "t.account.ldapId = :ldapId", ldapId)
+                + count(from + "t.destination.ldapId = :ldapId", ldapId)
+                - count(from + "t.account.ldapId = :ldapId AND t.destination.ldapId = :ldapId", ldapId);
+    }
+
+    private long count(String jpql, String ldapId) {
+        return entityManager.createQuery(jpql, Long.class).setParameter("ldapId", ldapId).getSingleResult();
+    }
+
+    private static Specification<Transaction> side(String column, String ldapId) {
+        return (root, query, builder) -> builder.equal(root.get(column).get("ldapId"), ldapId);
+    }
+
+    /**
+     * Merges two sorted lists. Row present in both lists, e.g. transaction to user himself, is taken once.
+     */
+    private static <R extends TransactionRow> List<R> merge(List<R> first, List<R> second,
+                                                            Comparator<TransactionRow> order, int limit) {
+        List<R> result = new ArrayList<>(Math.min(limit, first.size() + second.size()));
+        int i = 0;
+        int j = 0;
+        while (result.size() < limit && (i < first.size() || j < second.size())) {
+            if (j >= second.size()) {
+                result.add(first.get(i++));
+            } else if (i >= first.size()) {
+                result.add(second.get(j++));
+            } else {
+                int comparison = order.compare(first.get(i), second.get(j));
+                if (comparison < 0) {
+                    result.add(first.get(i++));
+                } else if (comparison > 0) {
+                    result.add(second.get(j++));
+                } else {
+                    result.add(first.get(i++));
+                    j++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Archived transactions have the same fields, so transactions filter is applied to them as is.
+     */
+    private static List<Predicate> toPredicates(Specification<Transaction> spec, Root<?> root,
+                                                CriteriaQuery<?> query, CriteriaBuilder builder) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate((Root<Transaction>) root, query, builder);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        return predicates;
+    }
+
+    private Instant getLastArchived() {
+        return entityManager.createQuery("SELECT MAX(t.created) FROM ArchivedTransaction t", Instant.class).getSingleResult();
+    }
+
+    private static boolean reachesArchive(Specification<Transaction> spec, Instant lastArchived) {
+        if (lastArchived == null) {
+            return false;
+        }
+        Instant from = spec instanceof GenericFilter
+                ? ((GenericFilter<Transaction>) spec).getLowerBound("created", Instant.class)
+                : null;
+        return from == null || !from.isAfter(lastArchived);
+    }
+
+    /**
+     * @return whether newest first rows fill the page and all of them are newer than archived ones
+     */
+    private static boolean isBeforeArchive(List<? extends TransactionRow> rows, Sort.Direction direction,
+                                           int limit, Instant lastArchived) {
+        return direction == Sort.Direction.DESC && rows.size() >= limit
+                && rows.get(rows.size() - 1).getCreated().isAfter(lastArchived);
+    }
+
+    private static long getTotal(List<?> content, Pageable pageable, LongSupplier count) {
+        if (!content.isEmpty() && content.size() < pageable.getPageSize()) {
+            return pageable.getOffset() + content.size();
+        } else if (content.isEmpty() && pageable.getOffset() == 0) {
+            return 0;
+        }
+        return count.getAsLong();
+    }
+
+    private static Comparator<TransactionRow> getOrder(Sort.Direction direction) {
+        Comparator<TransactionRow> order = Comparator.comparing(TransactionRow::getCreated);
+        order = order.thenComparing(TransactionRow::getId);
+        return direction == Sort.Direction.ASC ? order : order.reversed();
+    }
+
+    /**
+     * Order of rows the same as order of merge sort in DB: nulls go first, text is compared ignoring case
+     * as by default collation, enums are compared by names.
+     */
+    private static Comparator<TransactionRow> getOrder(Sort sort, Class<?> type) {
+        Comparator<TransactionRow> order = null;
+        for (Sort.Order property : sort) {
+            Comparator<TransactionRow> byProperty = getComparator(type, property.getProperty().split("\\.")[0]);
+            byProperty = property.isAscending() ? byProperty : byProperty.reversed();
+            order = order == null ? byProperty : order.thenComparing(byProperty);
+        }
+        return order;
+    }
+
+    private static Comparator<TransactionRow> getComparator(Class<?> type, String property) {
+        if (property.equals("id")) {
+            return Comparator.comparing(TransactionRow::getId);
+        }
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, property);
+        if (descriptor == null || descriptor.getReadMethod() == null) {
+            throw new IllegalArgumentException("Transactions can't be sorted by " + property + ".");
+        }
+        Method getter = descriptor.getReadMethod();
+        return (first, second) -> compare(getSortValue(first, getter), getSortValue(second, getter));
+    }
+
+    private static Comparable getSortValue(TransactionRow row, Method getter) {
+        Object value = ReflectionUtils.invokeMethod(getter, row);
+        if (value instanceof String) {
+            return ((String) value).toLowerCase();
+        } else if (value instanceof Enum) {
+            return ((Enum) value).name();
+        }
+        return (Comparable) value;
+    }
+
+    private static int compare(Comparable first, Comparable second) {
+        if (first == null) {
+            return second == null ? 0 : -1;
+        }
+        return second == null ? 1 : first.compareTo(second);
+    }
+
+    /**
+     * Sort of listings, the same whether archive is read or not. Rows have names of accounts only, so accounts
+     * are sorted by names instead of ids, and rows merged from both tables can be compared by values they have.
+     * Id is added as the last key in direction of the first one, so order of rows is total.
+     * Rows without sort are the newest first.
+     *
+     * @throws IllegalArgumentException if sort is by nested field other than name of account
+     */
+    private static Sort normalize(Sort sort) {
+        if (sort == null) {
+            return new Sort(Sort.Direction.DESC, "created", "id");
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String property = order.getProperty();
+            if (property.equals("id")) {
+                break;
+            }
+            String field = property.split("\\.")[0];
+            boolean account = field.equals("account") || field.equals("destination");
+            if (!property.equals(field) && !(account && property.equals(field + ".fullName"))) {
+                throw new IllegalArgumentException("Transactions can't be sorted by " + property + ".");
+            }
+            orders.add(account ? new Sort.Order(order.getDirection(), field + ".fullName") : order);
+        }
+        Sort.Direction direction = sort.iterator().next().getDirection();
+        Sort.Order id = sort.getOrderFor("id");
+        orders.add(new Sort.Order(id != null ? id.getDirection() : direction, "id"));
+        return new Sort(orders);
+    }
+
+    /**
+     * (created, id) after cursor. Redundant bound on created alone lets index range scan start at cursor.
+     */
+    private Predicate seek(CriteriaBuilder builder, Path<Instant> created, Path<Long> id,
+                           TransactionCursor cursor, Sort.Direction direction) {
+        if (direction == Sort.Direction.ASC) {
+            return builder.and(
+                    builder.greaterThanOrEqualTo(created, cursor.getCreated()),
+                    builder.or(
+                            builder.greaterThan(created, cursor.getCreated()),
+                            builder.greaterThan(id, cursor.getId())));
+        } else {
+            return builder.and(
+                    builder.lessThanOrEqualTo(created, cursor.getCreated()),
+                    builder.or(
+                            builder.lessThan(created, cursor.getCreated()),
+                            builder.lessThan(id, cursor.getId())));
+        }
+    }
+
+    /**
+     * Rows of one table read by chunks in order of (created, id).
+     */
+    private class Chunks<R extends TransactionRow> {
+
+        private final Class<?> entity;
+
+        private final Specification<Transaction> spec;
+
+        private final Sort.Direction direction;
+
+        private final Class<R> type;
+
+        private List<R> chunk;
+
+        private int position;
+
+        private Chunks(Class<?> entity, Specification<Transaction> spec, Sort.Direction direction, Class<R> type) {
+            this.entity = entity;
+            this.spec = spec;
+            this.direction = direction;
+            this.type = type;
+            this.chunk = findAfter(entity, spec, null, direction, SCROLL_CHUNK_SIZE, type);
+        }
+
+        boolean hasNext() {
+            if (position == chunk.size() && chunk.size() == SCROLL_CHUNK_SIZE) {
+                TransactionCursor last = TransactionCursor.of(chunk.get(position - 1));
+                chunk = findAfter(entity, spec, last, direction, SCROLL_CHUNK_SIZE, type);
+                position = 0;
+            }
+            return position < chunk.size();
+        }
+
+        R peek() {
+            return chunk.get(position);
+        }
+
+        R next() {
+            return chunk.get(position++);
+        }
+    }
+}
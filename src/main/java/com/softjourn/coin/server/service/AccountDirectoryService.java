@@ -0,0 +1,151 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.dto.AccountDTO;
+import com.softjourn.coin.server.dto.AccountsDeltaDTO;
+import com.softjourn.coin.server.entity.Account;
+import com.softjourn.coin.server.entity.AccountDirectory;
+import com.softjourn.coin.server.entity.AccountType;
+import com.softjourn.coin.server.repository.AccountDirectoryRepository;
+import com.softjourn.coin.server.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps version of accounts directory.
+ *
+ * All changes of accounts should go through this service (or take version from it)
+ * in the same transaction as the change. Directory row stays locked till the end
+ * of transaction, so nobody can see new version before changes are committed.
+ */
+@Service
+public class AccountDirectoryService {
+
+    private AccountDirectoryRepository directoryRepository;
+
+    private AccountRepository accountRepository;
+
+    @Autowired
+    public AccountDirectoryService(AccountDirectoryRepository directoryRepository, AccountRepository accountRepository) {
+        this.directoryRepository = directoryRepository;
+        this.accountRepository = accountRepository;
+    }
+
+    public long getVersion() {
+        return directoryRepository.getVersion();
+    }
+
+    @Transactional
+    public long nextVersion() {
+        directoryRepository.incrementVersion();
+        return getVersion();
+    }
+
+    /**
+     * Takes next version and makes all previous versions unusable for delta.
+     * Should be used when accounts are removed physically.
+     */
+    @Transactional
+    public long nextVersionWithResync() {
+        directoryRepository.incrementVersionWithResync();
+        return getVersion();
+    }
+
+    @Transactional
+    public Account save(Account account) {
+        account.setVersion(nextVersion());
+        return accountRepository.save(account);
+    }
+
+    @Transactional
+    public List<Account> save(Iterable<Account> accounts) {
+        if (!accounts.iterator().hasNext()) {
+            return Collections.emptyList();
+        }
+        long version = nextVersion();
+        accounts.forEach(account -> account.setVersion(version));
+        return accountRepository.save(accounts);
+    }
+
+    @Transactional
+    public void delete(Iterable<Account> accounts) {
+        if (accounts.iterator().hasNext()) {
+            nextVersionWithResync();
+            accountRepository.delete(accounts);
+        }
+    }
+
+    @Transactional
+    public int markDeleted(List<String> ldapIds) {
+        if (ldapIds.isEmpty()) {
+            return 0;
+        }
+        return accountRepository.markDeleted(ldapIds, nextVersion());
+    }
+
+    public List<AccountDTO> getAll() {
+        return accountRepository.findAllUndeleted().stream()
+                .filter(AccountDirectoryService::isListed)
+                .map(AccountDirectoryService::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get accounts changed after passed version.
+     *
+     * @param since version of directory client already has
+     * @return changed and removed accounts or whole directory if delta can't be built for passed version
+     */
+    public AccountsDeltaDTO getDelta(long since) {
+        long version = getVersion();
+        List<Account> changedAccounts = getChangedSince(since);
+        if (changedAccounts == null) {
+            return new AccountsDeltaDTO(version, true, getAll(), Collections.emptyList());
+        }
+
+        List<AccountDTO> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        changedAccounts.forEach(account -> {
+            if (isListed(account)) {
+                changed.add(toDTO(account));
+            } else {
+                removed.add(account.getLdapId());
+            }
+        });
+        return new AccountsDeltaDTO(version, false, changed, removed);
+    }
+
+    /**
+     * @param since directory version
+     * @return accounts (including deleted ones) changed after passed version
+     * or null if some accounts were removed physically after it
+     */
+    public List<Account> getChangedSince(long since) {
+        AccountDirectory directory = getDirectory();
+        if (since < directory.getResyncVersion() || since > directory.getVersion()) {
+            return null;
+        }
+        return accountRepository.findChangedSince(since);
+    }
+
+    private AccountDirectory getDirectory() {
+        return directoryRepository.findOne(AccountDirectory.ID);
+    }
+
+    /**
+     * @return whether account is shown in accounts directory
+     */
+    static boolean isListed(Account account) {
+        return account.getAccountType() == AccountType.REGULAR && !account.isDeleted();
+    }
+
+    private static AccountDTO toDTO(Account account) {
+        return new AccountDTO(account.getLdapId(), account.getEmail());
+    }
+}
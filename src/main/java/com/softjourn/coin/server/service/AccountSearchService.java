@@ -0,0 +1,253 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.dto.AccountSearchDTO;
+import com.softjourn.coin.server.entity.Account;
+import com.softjourn.coin.server.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory prefix index over accounts directory.
+ *
+ * Full name, email and ldapId of every listed account are split into lowercase tokens
+ * kept in sorted map, so all tokens starting with some prefix are one sub map.
+ * Index is updated on accounts changes made by this node and synchronized with
+ * directory version periodically to catch up changes made by other nodes.
+ */
+@Slf4j
+@Service
+public class AccountSearchService {
+
+    private static final int EXACT_MATCH_SCORE = 3;
+    private static final int PREFIX_MATCH_SCORE = 2;
+    private static final int FUZZY_MATCH_SCORE = 1;
+    private static final int FUZZY_MIN_LENGTH = 3;
+
+    private final AccountRepository accountRepository;
+
+    private final AccountDirectoryService accountDirectoryService;
+
+    private final int maxResults;
+
+    private volatile Map<String, AccountSearchDTO> accounts = new ConcurrentHashMap<>();
+
+    private volatile ConcurrentNavigableMap<String, Set<String>> tokens = new ConcurrentSkipListMap<>();
+
+    private volatile long indexedVersion = -1;
+
+    @Autowired
+    public AccountSearchService(AccountRepository accountRepository,
+                                AccountDirectoryService accountDirectoryService,
+                                @Value("${accounts.search.max-results:100}") int maxResults) {
+        this.accountRepository = accountRepository;
+        this.accountDirectoryService = accountDirectoryService;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Search accounts which name, email or ldapId tokens start with all words of query.
+     * If some word does not match any token as prefix, tokens with one typo are accepted for it.
+     *
+     * @param query    words to search
+     * @param pageable page of results, page size is limited by max results count
+     * @return ranked page of found accounts
+     */
+    public Page<AccountSearchDTO> search(String query, Pageable pageable) {
+        int size = Math.max(1, Math.min(pageable.getPageSize(), maxResults));
+        Pageable limited = new PageRequest(pageable.getPageNumber(), size);
+
+        List<String> terms = tokenize(query).distinct().collect(Collectors.toList());
+        if (terms.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), limited, 0);
+        }
+
+        Map<String, Integer> scores = null;
+        for (String term : terms) {
+            Map<String, Integer> termScores = match(term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((ldapId, score) -> score + termScores.get(ldapId));
+            }
+        }
+
+        Map<String, AccountSearchDTO> current = accounts;
+        List<AccountSearchDTO> ranked = scores.entrySet().stream()
+                .filter(entry -> current.containsKey(entry.getKey()))
+                .sorted(Comparator.<Map.Entry<String, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                        .thenComparing(entry -> Optional.ofNullable(current.get(entry.getKey()).getFullName()).orElse("")))
+                .limit(maxResults)
+                .map(entry -> current.get(entry.getKey()))
+                .collect(Collectors.toList());
+
+        int from = Math.min(limited.getOffset(), ranked.size());
+        int to = Math.min(from + size, ranked.size());
+        return new PageImpl<>(ranked.subList(from, to), limited, ranked.size());
+    }
+
+    public synchronized void put(Account account) {
+        remove(account.getLdapId());
+        if (AccountDirectoryService.isListed(account)) {
+            index(account, accounts, tokens);
+        }
+    }
+
+    public synchronized void remove(String ldapId) {
+        AccountSearchDTO removed = accounts.remove(ldapId);
+        if (removed != null) {
+            tokens(removed).forEach(token -> {
+                Set<String> ids = tokens.get(token);
+                if (ids != null) {
+                    ids.remove(ldapId);
+                    if (ids.isEmpty()) {
+                        tokens.remove(token);
+                    }
+                }
+            });
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long version = accountDirectoryService.getVersion();
+        Map<String, AccountSearchDTO> newAccounts = new ConcurrentHashMap<>();
+        ConcurrentNavigableMap<String, Set<String>> newTokens = new ConcurrentSkipListMap<>();
+        accountRepository.findAllUndeleted().stream()
+                .filter(AccountDirectoryService::isListed)
+                .forEach(account -> index(account, newAccounts, newTokens));
+
+        accounts = newAccounts;
+        tokens = newTokens;
+        indexedVersion = version;
+        log.info("Accounts search index is built for {} accounts", newAccounts.size());
+    }
+
+    /**
+     * Applies changes made after indexed version of directory.
+     */
+    @Scheduled(fixedDelayString = "${accounts.search.refresh-interval:30000}")
+    public synchronized void refresh() {
+        if (indexedVersion < 0) {
+            return;
+        }
+        long version = accountDirectoryService.getVersion();
+        if (version == indexedVersion) {
+            return;
+        }
+        List<Account> changed = accountDirectoryService.getChangedSince(indexedVersion);
+        if (changed == null) {
+            rebuild();
+        } else {
+            changed.forEach(this::put);
+            indexedVersion = version;
+        }
+    }
+
+    private static void index(Account account,
+                              Map<String, AccountSearchDTO> accounts,
+                              ConcurrentNavigableMap<String, Set<String>> tokens) {
+        AccountSearchDTO dto = new AccountSearchDTO(account.getLdapId(), account.getEmail(), account.getFullName());
+        accounts.put(account.getLdapId(), dto);
+        tokens(dto).forEach(token -> tokens
+                .computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet())
+                .add(account.getLdapId()));
+    }
+
+    private Map<String, Integer> match(String term) {
+        Map<String, Integer> scores = new HashMap<>();
+        tokens.subMap(term, true, term + Character.MAX_VALUE, true)
+                .forEach((token, ids) -> {
+                    int score = token.equals(term) ? EXACT_MATCH_SCORE : PREFIX_MATCH_SCORE;
+                    ids.forEach(id -> scores.merge(id, score, Math::max));
+                });
+
+        if (scores.isEmpty() && term.length() >= FUZZY_MIN_LENGTH) {
+            // typo is not expected in the first letter
+            String first = term.substring(0, 1);
+            tokens.subMap(first, true, first + Character.MAX_VALUE, true)
+                    .forEach((token, ids) -> {
+                        if (isPrefixWithTypo(term, token)) {
+                            ids.forEach(id -> scores.merge(id, FUZZY_MATCH_SCORE, Math::max));
+                        }
+                    });
+        }
+        return scores;
+    }
+
+    /**
+     * @return true if term differs from some prefix of token by one substitution, insertion or deletion
+     */
+    private static boolean isPrefixWithTypo(String term, String token) {
+        for (int length = term.length() - 1; length <= term.length() + 1; length++) {
+            if (length <= token.length() && isOneEditAway(term, token.substring(0, length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOneEditAway(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        String shorter = a.length() <= b.length() ? a : b;
+        String longer = a.length() <= b.length() ? b : a;
+        int i = 0;
+        int j = 0;
+        boolean edited = false;
+        while (i < shorter.length() && j < longer.length()) {
+            if (shorter.charAt(i) != longer.charAt(j)) {
+                if (edited) {
+                    return false;
+                }
+                edited = true;
+                if (shorter.length() == longer.length()) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+            j++;
+        }
+        return true;
+    }
+
+    private static Stream<String> tokens(AccountSearchDTO account) {
+        String email = Optional.ofNullable(account.getEmail()).orElse("");
+        String localPart = email.contains("@") ? email.substring(0, email.indexOf('@')) : email;
+        return Stream.of(
+                tokenize(account.getFullName()),
+                tokenize(localPart),
+                tokenize(account.getLdap()),
+                Stream.of(email.toLowerCase(Locale.ROOT), Optional.ofNullable(account.getLdap()).orElse("").toLowerCase(Locale.ROOT)))
+                .flatMap(stream -> stream)
+                .filter(token -> !token.isEmpty())
+                .distinct();
+    }
+
+    private static Stream<String> tokenize(String text) {
+        if (text == null) {
+            return Stream.empty();
+        }
+        return Stream.of(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty());
+    }
+}
@@ -0,0 +1,246 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.entity.Account;
+import com.softjourn.coin.server.entity.ResetJob;
+import com.softjourn.coin.server.entity.ResetJobStatus;
+import com.softjourn.coin.server.exceptions.NotFoundException;
+import com.softjourn.coin.server.repository.AccountRepository;
+import com.softjourn.coin.server.repository.ResetJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Re-enrolls all accounts in background.
+ *
+ * Accounts are read in chunks ordered by ldapId. Each chunk is checked against auth server
+ * and enrolled in Fabric by bounded pool of workers, after that all changes of chunk
+ * are written in one DB transaction together with job cursor, so interrupted job
+ * continues from the last written chunk.
+ */
+@Slf4j
+@Service
+public class AccountsResetService {
+
+    private final AccountsService accountsService;
+
+    private final FabricService fabricService;
+
+    private final AccountRepository accountRepository;
+
+    private final AccountDirectoryService accountDirectoryService;
+
+    private final ResetJobRepository resetJobRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService workers;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor();
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final int batchSize;
+
+    @Autowired
+    public AccountsResetService(AccountsService accountsService,
+                                FabricService fabricService,
+                                AccountRepository accountRepository,
+                                AccountDirectoryService accountDirectoryService,
+                                ResetJobRepository resetJobRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${accounts.reset.workers:8}") int workers,
+                                @Value("${accounts.reset.batch-size:50}") int batchSize) {
+        this.accountsService = accountsService;
+        this.fabricService = fabricService;
+        this.accountRepository = accountRepository;
+        this.accountDirectoryService = accountDirectoryService;
+        this.resetJobRepository = resetJobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts new reset job or continues interrupted one.
+     *
+     * @return job that is running
+     */
+    public synchronized ResetJob start() {
+        ResetJob job = Optional
+                .ofNullable(resetJobRepository.findFirstByStatusOrderByIdDesc(ResetJobStatus.RUNNING))
+                .orElseGet(() -> resetJobRepository.save(ResetJob.start()));
+        launch(job);
+        return job;
+    }
+
+    public ResetJob getStatus() {
+        return Optional
+                .ofNullable(resetJobRepository.findFirstByOrderByIdDesc())
+                .orElseThrow(() -> new NotFoundException("Reset was never started"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeInterrupted() {
+        Optional.ofNullable(resetJobRepository.findFirstByStatusOrderByIdDesc(ResetJobStatus.RUNNING))
+                .ifPresent(job -> {
+                    log.info("Resuming reset job {} after account {}", job.getId(), job.getLastLdapId());
+                    launch(job);
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void launch(ResetJob job) {
+        if (running.compareAndSet(false, true)) {
+            coordinator.submit(() -> run(job));
+        }
+    }
+
+    /**
+     * Job interrupted by shutdown is left running with its last committed position, so it's resumed on start.
+     */
+    private void run(ResetJob job) {
+        try {
+            List<Account> chunk;
+            while (!(chunk = nextChunk(job.getLastLdapId())).isEmpty()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                job = processChunk(job, chunk);
+            }
+            job.finish(ResetJobStatus.COMPLETED, null);
+            resetJobRepository.save(job);
+        } catch (InterruptedException e) {
+            interrupted(job);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                interrupted(job);
+            } else {
+                log.error("Reset job " + job.getId() + " failed", e);
+                job.finish(ResetJobStatus.FAILED, e.getLocalizedMessage());
+                resetJobRepository.save(job);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void interrupted(ResetJob job) {
+        log.info("Reset job {} is interrupted after account {}", job.getId(), job.getLastLdapId());
+        Thread.currentThread().interrupt();
+    }
+
+    private List<Account> nextChunk(String lastLdapId) {
+        return accountRepository.findAllAfter(Optional.ofNullable(lastLdapId).orElse(""), new PageRequest(0, batchSize));
+    }
+
+    private ResetJob processChunk(ResetJob job, List<Account> chunk) throws InterruptedException {
+        List<Future<Account>> results = chunk.stream()
+                .map(account -> workers.submit(() -> reenroll(account)))
+                .collect(Collectors.toList());
+
+        List<Account> toSave = new ArrayList<>();
+        List<Account> toDelete = new ArrayList<>();
+        long failed = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            Account account = chunk.get(i);
+            try {
+                Account reenrolled = results.get(i).get();
+                if (reenrolled == null) {
+                    toDelete.add(account);
+                } else if (!Objects.equals(reenrolled.getEmail(), account.getEmail())) {
+                    toSave.add(reenrolled);
+                }
+            } catch (ExecutionException e) {
+                log.warn("Can't reset account " + account.getLdapId(), e.getCause());
+                failed++;
+            }
+        }
+
+        String lastLdapId = chunk.get(chunk.size() - 1).getLdapId();
+        long processed = chunk.size() - failed;
+        try {
+            return write(job, toSave, toDelete, lastLdapId, processed, failed);
+        } catch (RuntimeException e) {
+            log.warn("Batch write of accounts after " + job.getLastLdapId() + " failed. Writing one by one.", e);
+            long writeFailed = writeOneByOne(toSave, toDelete);
+            return write(job, new ArrayList<>(), new ArrayList<>(), lastLdapId, processed - writeFailed, failed + writeFailed);
+        }
+    }
+
+    private ResetJob write(ResetJob job, List<Account> toSave, List<Account> toDelete,
+                           String lastLdapId, long processed, long failed) {
+        return transactionTemplate.execute(status -> {
+            accountDirectoryService.save(toSave);
+            accountDirectoryService.delete(toDelete);
+            ResetJob current = resetJobRepository.findOne(job.getId());
+            current.advance(lastLdapId, processed, failed);
+            return resetJobRepository.save(current);
+        });
+    }
+
+    private long writeOneByOne(List<Account> toSave, List<Account> toDelete) {
+        long failed = 0;
+        for (Account account : toSave) {
+            try {
+                accountDirectoryService.save(account);
+            } catch (RuntimeException e) {
+                log.warn("Can't save account " + account.getLdapId(), e);
+                failed++;
+            }
+        }
+        for (Account account : toDelete) {
+            try {
+                accountDirectoryService.delete(Collections.singletonList(account));
+            } catch (RuntimeException e) {
+                log.warn("Can't delete account " + account.getLdapId(), e);
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return account with actual email or null if account does not exist in LDAP any more
+     */
+    private Account reenroll(Account account) {
+        Account accountIfExistInLdapBase = accountsService.getAccountIfExistInLdapBase(account.getLdapId());
+        if (accountIfExistInLdapBase == null || accountIfExistInLdapBase.getEmail() == null) {
+            return null;
+        }
+        fabricService.enroll(accountIfExistInLdapBase.getEmail());
+
+        Account reenrolled = new Account(account.getLdapId(), accountIfExistInLdapBase.getEmail(), account.getAmount());
+        reenrolled.setFullName(account.getFullName());
+        reenrolled.setImage(account.getImage());
+        reenrolled.setAccountType(account.getAccountType());
+        reenrolled.setNew(account.isNew());
+        reenrolled.setDeleted(account.isDeleted());
+        return reenrolled;
+    }
+}
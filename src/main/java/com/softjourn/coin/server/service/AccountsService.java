@@ -4,6 +4,8 @@ package com.softjourn.coin.server.service;
 import com.softjourn.coin.server.dto.*;
 import com.softjourn.coin.server.entity.Account;
 import com.softjourn.coin.server.entity.AccountType;
+import com.softjourn.coin.server.entity.Transaction;
+import com.softjourn.coin.server.entity.TransactionStatus;
 import com.softjourn.coin.server.exceptions.AccountEnrollException;
 import com.softjourn.coin.server.exceptions.AccountNotFoundException;
 import com.softjourn.coin.server.exceptions.AccountWasDeletedException;
@@ -12,23 +14,20 @@ import com.softjourn.coin.server.repository.AccountRepository;
 import com.softjourn.common.auth.OAuthHelper;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.transaction.Transactional;
-import java.io.*;
 import java.math.BigDecimal;
-import java.nio.file.Files;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -40,6 +39,8 @@ public class AccountsService {
 
     private static final String DEFAULT_IMAGE_NAME = "/account/default";
 
+    private static final String IMAGES_URI = "/images/";
+
     @Autowired
     private FabricService fabricService;
 
@@ -47,6 +48,16 @@ public class AccountsService {
 
     private AccountRepository accountRepository;
 
+    private AccountDirectoryService accountDirectoryService;
+
+    private AccountSearchService accountSearchService;
+
+    private ImageBlobService imageBlobService;
+
+    private ImageCache imageCache;
+
+    private ThumbnailService thumbnailService;
+
     private String authServerUrl;
     private OAuthHelper oAuthHelper;
 
@@ -56,12 +67,22 @@ public class AccountsService {
 
     @Autowired
     public AccountsService(AccountRepository accountRepository,
+                           AccountDirectoryService accountDirectoryService,
+                           AccountSearchService accountSearchService,
+                           ImageBlobService imageBlobService,
+                           ImageCache imageCache,
+                           ThumbnailService thumbnailService,
                            @Lazy CoinService coinService,
                            @Value("${auth.server.url}") String authServerUrl,
                            OAuthHelper oAuthHelper,
                            @Value("${image.storage.path}") String imageStoragePath,
                            @Value("${image.account.default}") String defaultAccountImagePath) {
         this.accountRepository = accountRepository;
+        this.accountDirectoryService = accountDirectoryService;
+        this.accountSearchService = accountSearchService;
+        this.imageBlobService = imageBlobService;
+        this.imageCache = imageCache;
+        this.thumbnailService = thumbnailService;
         this.coinService = coinService;
         this.authServerUrl = authServerUrl;
         this.oAuthHelper = oAuthHelper;
@@ -121,7 +142,7 @@ public class AccountsService {
 
         EnrollResponseDTO body = fabricService.enroll(newMerchantAccount.getEmail()).getBody();
         if (body.getSuccess()) {
-            return accountRepository.save(newMerchantAccount);
+            return accountDirectoryService.save(newMerchantAccount);
         } else {
             throw new AccountEnrollException("Failure try to enroll account with email " + newMerchantAccount.getEmail());
         }
@@ -140,30 +161,85 @@ public class AccountsService {
             coinService.moveToTreasury(account.getLdapId(), accountAmount, comment);
         }
 
-        return accountRepository.updateIsDeletedByLdapId(ldapId, true) == 1;
+        accountSearchService.remove(ldapId);
+        return accountRepository.updateIsDeletedByLdapId(ldapId, true, accountDirectoryService.nextVersion()) == 1;
+    }
+
+    /**
+     * Delete accounts moving all their coins to treasury.
+     *
+     * Balances of all accounts are fetched by one query and all accounts
+     * are marked as deleted by one update. Account is not deleted if its coins
+     * can't be moved to treasury.
+     *
+     * @param ldapIds accounts to delete
+     * @return result for each passed ldapId
+     */
+    public List<AccountDeleteResultDTO> delete(List<String> ldapIds) {
+        Map<String, Account> accounts = accountRepository.findAll(ldapIds).stream()
+                .filter(account -> !account.isDeleted())
+                .collect(Collectors.toMap(Account::getLdapId, Function.identity()));
+
+        Map<String, BigDecimal> balances = new HashMap<>();
+        if (!accounts.isEmpty()) {
+            coinService.getAmounts(new ArrayList<>(accounts.values()))
+                    .forEach(balance -> balances.put(balance.getUserId(), balance.getBalance()));
+        }
+
+        Map<Account, BigDecimal> toWithdraw = accounts.values().stream()
+                .filter(account -> Optional.ofNullable(balances.get(account.getEmail()))
+                        .map(balance -> balance.compareTo(BigDecimal.ZERO) > 0)
+                        .orElse(false))
+                .collect(Collectors.toMap(Function.identity(), account -> balances.get(account.getEmail())));
+        Map<String, Transaction> withdrawals = toWithdraw.isEmpty()
+                ? Collections.emptyMap()
+                : coinService.moveAllToTreasury(toWithdraw, account -> String.format(
+                        "Withdrawal of all the coins to treasury before delete account %s", account.getLdapId()));
+
+        Map<String, AccountDeleteResultDTO> results = new LinkedHashMap<>();
+        ldapIds.forEach(ldapId -> {
+            Account account = accounts.get(ldapId);
+            if (account == null) {
+                results.put(ldapId, new AccountDeleteResultDTO(ldapId, false, null, "Account not found."));
+            } else if (!balances.containsKey(account.getEmail())) {
+                results.put(ldapId, new AccountDeleteResultDTO(ldapId, false, null, "Can't get account balance."));
+            } else if (withdrawals.containsKey(ldapId)
+                    && withdrawals.get(ldapId).getStatus() != TransactionStatus.SUCCESS) {
+                results.put(ldapId, new AccountDeleteResultDTO(ldapId, false, null, withdrawals.get(ldapId).getError()));
+            } else {
+                BigDecimal withdrawn = Optional.ofNullable(withdrawals.get(ldapId))
+                        .map(Transaction::getAmount)
+                        .orElse(BigDecimal.ZERO);
+                results.put(ldapId, new AccountDeleteResultDTO(ldapId, true, withdrawn, null));
+            }
+        });
+
+        List<String> toDelete = results.values().stream()
+                .filter(AccountDeleteResultDTO::isDeleted)
+                .map(AccountDeleteResultDTO::getLdapId)
+                .collect(Collectors.toList());
+        accountDirectoryService.markDeleted(toDelete);
+        toDelete.forEach(accountSearchService::remove);
+
+        return new ArrayList<>(results.values());
     }
 
     public void loadAccountImage(MultipartFile file, String accountName) {
         Account account = checkAccountExists(accountName);
-        String uri = String.format("/account/%s/%s", account.getLdapId(), file.getOriginalFilename());
-        this.storeFile(file, uri);
-        account.setImage(uri);
+        String name = imageBlobService.store(account.getLdapId(), file, getExtension(file.getOriginalFilename()));
+        account.setImage(IMAGES_URI + name);
         this.update(account);
     }
 
-    private void storeFile(MultipartFile file, String uri) {
-        String url = this.imageStoragePath + uri;
-        File storedFile = new File(url);
-        try {
-            FileUtils.deleteDirectory(storedFile.getParentFile());
-            Files.createDirectories(storedFile.getParentFile().toPath());
-            //noinspection ResultOfMethodCallIgnored
-            storedFile.createNewFile();
-            FileOutputStream out = new FileOutputStream(storedFile);
-            out.write(file.getBytes());
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Can not create file with " + url + " path", e);
+    private static String getExtension(String originalFilename) {
+        String extension = Optional.ofNullable(StringUtils.getFilenameExtension(originalFilename))
+                .map(ext -> ext.toLowerCase(Locale.ROOT))
+                .map(ext -> ext.equals("jpeg") ? "jpg" : ext)
+                .orElse("");
+        if (!extension.matches("[a-z0-9]{1,5}")) {
+            throw new IllegalArgumentException("Wrong file name " + originalFilename);
         }
+        return extension;
     }
 
     /**
@@ -176,41 +252,30 @@ public class AccountsService {
                 .orElseThrow(() -> new AccountNotFoundException(accountName));
     }
 
-    public byte[] getImage(String uri) {
-        String fullPath = this.imageStoragePath + uri;
-        File file = new File(fullPath);
-        InputStream in;
-        try {
-            in = new FileInputStream(file);
-            return IOUtils.toByteArray(in);
-        } catch (FileNotFoundException e) {
-            throw new NotFoundException("There is no image with this passed uri");
-        } catch (IOException e) {
-            // Can't read file. Should never happened
-            log.error("Method getImage uri. File can't be read", e);
-            throw new RuntimeException("File can't be read");
-        }
-
+    public Resource getImage(String uri) {
+        return imageCache.get(uri);
     }
 
-    public byte[] getDefaultImage() {
-        return this.getImage(this.defaultAccountImagePath);
-    }
-
-    public void reset() {
-        List<Account> accounts = accountRepository.findAll();
-
-        // enroll
-        for (Account account : accounts) {
-            Account accountIfExistInLdapBase = getAccountIfExistInLdapBase(account.getLdapId());
-            if (accountIfExistInLdapBase != null && accountIfExistInLdapBase.getEmail() != null) {
-                account.setEmail(accountIfExistInLdapBase.getEmail());
-                fabricService.enroll(account.getEmail());
-                accountRepository.save(account);
-            } else {
-                accountRepository.delete(account);
+    /**
+     * @param size requested max side of image in pixels, original image is returned if null
+     * @return the closest thumbnail or original image if thumbnail is not generated yet
+     */
+    public Resource getImage(String uri, Integer size) {
+        if (size != null) {
+            String thumbnailUri = thumbnailService.getThumbnailUri(uri, size);
+            if (thumbnailUri != null) {
+                try {
+                    return imageCache.get(thumbnailUri);
+                } catch (NotFoundException e) {
+                    thumbnailService.generateAsync(uri);
+                }
             }
         }
+        return this.getImage(uri);
+    }
+
+    public Resource getDefaultImage(Integer size) {
+        return this.getImage(this.defaultAccountImagePath, size);
     }
 
     Account getAccountIfExistInLdapBase(String ldapId) {
@@ -223,13 +288,15 @@ public class AccountsService {
     }
 
     Account update(Account account) {
-        return accountRepository.save(account);
+        Account updated = accountDirectoryService.save(account);
+        accountSearchService.put(updated);
+        return updated;
     }
 
     Account changeIsNewStatus(Boolean isNew, @NonNull Account account) {
         account.setNew(isNew);
 
-        return accountRepository.save(account);
+        return accountDirectoryService.save(account);
     }
 
     @Transactional
@@ -241,7 +308,7 @@ public class AccountsService {
                 .collect(Collectors.toList());
 
         if (Objects.nonNull(accountsIds) && !accountsIds.isEmpty()) {
-            accountRepository.changeIsNewStatus(isNew, accountsIds);
+            accountRepository.changeIsNewStatus(isNew, accountsIds, accountDirectoryService.nextVersion());
         }
 
         return StreamSupport
@@ -254,7 +321,11 @@ public class AccountsService {
     public Account createAccount(String ldapId) {
         return Optional.ofNullable(getAccountIfExistInLdapBase(ldapId))
                 .map(this::buildAccount)
-                .map(a -> accountRepository.save(a))
+                .map(a -> accountDirectoryService.save(a))
+                .map(a -> {
+                    accountSearchService.put(a);
+                    return a;
+                })
                 .orElseThrow(() -> new AccountNotFoundException(ldapId));
     }
 
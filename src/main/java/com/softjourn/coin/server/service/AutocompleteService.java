@@ -1,51 +1,149 @@
 package com.softjourn.coin.server.service;
 
+import com.softjourn.coin.server.util.LruCache;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
-import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
+import java.time.Instant;
 import java.time.temporal.Temporal;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
-import static com.softjourn.common.utils.ReflectionUtil.getIdFieldName;
 import static com.softjourn.common.utils.ReflectionUtil.getIdFieldType;
 
+/**
+ * Distinct values of entity fields for filter autocomplete.
+ *
+ * Values are read by prefix with limit and cached per field and prefix. Cached values older
+ * than ttl are still returned while they are reloaded in background.
+ * Paths of entity fields are described once.
+ */
+@Slf4j
 public class AutocompleteService<T> {
 
     private EntityManager entityManager;
 
-    private final CriteriaBuilder criteriaBuilder;
+    private final Class<T> entityClass;
 
-    private final Root<T> root;
+    private final int maxResults;
 
-    public AutocompleteService(Class<T> entityClass, EntityManager entityManager) {
+    private final long ttl;
+
+    private final LruCache<String, Values> cache;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    private final Map<Class<?>, Map<String, Object>> paths = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxResults max count of values returned for field
+     * @param ttl        time in millis values are considered actual
+     * @param cacheSize  max count of cached fields and prefixes
+     */
+    public AutocompleteService(Class<T> entityClass, EntityManager entityManager, int maxResults, long ttl, int cacheSize) {
         this.entityManager = entityManager;
+        this.entityClass = entityClass;
+        this.maxResults = maxResults;
+        this.ttl = ttl;
+        this.cache = new LruCache<>(values -> 1, cacheSize);
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(cacheSize));
 
-        criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<T> query = criteriaBuilder.createQuery(entityClass);
-        root = query.from(entityClass);
+        getAllPaths(entityClass);
     }
 
-    @SuppressWarnings("unchecked")
     public List getAutocomplete(String stringPath) {
-        Path path = getPathByCompositeField(root, stringPath);
-        Class pathClass = path.getJavaType();
-        CriteriaQuery rootQuery = criteriaBuilder.createQuery(pathClass);
-        Root<T> rot = rootQuery.from(root.getModel());
-        CriteriaQuery query = rootQuery.select(getPathByCompositeField(rot, stringPath).alias("result")).distinct(true);
-        TypedQuery requestQuery = entityManager.createQuery(query);
-        return requestQuery.getResultList();
+        return getAutocomplete(stringPath, null, maxResults);
+    }
+
+    /**
+     * @param stringPath field name or path separated by dots
+     * @param prefix     start of values
+     * @param limit      max count of values, can't exceed configured max
+     * @return sorted distinct values of field
+     */
+    public List getAutocomplete(String stringPath, String prefix, int limit) {
+        int size = Math.max(1, Math.min(limit, maxResults));
+        String normalizedPrefix = prefix == null ? "" : prefix;
+        String key = stringPath + "\n" + normalizedPrefix + "\n" + size;
+
+        Values values = cache.get(key);
+        if (values == null) {
+            values = load(stringPath, normalizedPrefix, size);
+            cache.put(key, values);
+        } else if (values.getLoaded().plusMillis(ttl).isBefore(Instant.now())) {
+            refresh(key, stringPath, normalizedPrefix, size);
+        }
+        return values.getValues();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void refresh(String key, String stringPath, String prefix, int size) {
+        if (!inProgress.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    cache.put(key, load(stringPath, prefix, size));
+                } catch (Exception e) {
+                    log.warn("Can't load autocomplete values of " + stringPath, e);
+                } finally {
+                    inProgress.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(key);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Values load(String stringPath, String prefix, int size) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = criteriaBuilder.createQuery();
+        Root<T> root = query.from(entityClass);
+        Path path = FieldPathPlan.of(root, stringPath).getPath(root);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(criteriaBuilder.isNotNull(path));
+        if (!prefix.isEmpty()) {
+            // not text values are compared by their string form in DB
+            Expression<String> text = String.class.equals(path.getJavaType()) ? path : path.as(String.class);
+            predicates.add(criteriaBuilder.like(text, GenericFilter.prefixPattern(prefix), GenericFilter.LIKE_ESCAPE));
+        }
+        query.select(path).distinct(true)
+                .where(predicates.toArray(new Predicate[predicates.size()]))
+                .orderBy(criteriaBuilder.asc(path));
+
+        List<Object> result = entityManager.createQuery(query).setMaxResults(size).getResultList();
+        return new Values(Collections.unmodifiableList(result), Instant.now());
     }
 
     public <C> Map<String, Object> getAllPaths(Class<? extends C> rootClass) {
         if (BeanUtils.isSimpleProperty(rootClass) || Temporal.class.isAssignableFrom(rootClass)) {
             throw new IllegalArgumentException("Class " + rootClass + " is not entity class.");
         }
-        return getAllPaths(rootClass, "");
+        Map<String, Object> result = paths.get(rootClass);
+        if (result == null) {
+            result = Collections.unmodifiableMap(getAllPaths(rootClass, ""));
+            paths.putIfAbsent(rootClass, result);
+        }
+        return result;
     }
 
     private Map<String, Object> getAllPaths(Class clazz, String fieldName) {
@@ -91,33 +189,12 @@ public class AutocompleteService<T> {
         return Number.class.isAssignableFrom(type) || (type.isPrimitive() && !boolean.class.equals(type));
     }
 
-    private Path getPathByCompositeField(Root root, String fieldName) {
-        String[] fieldsPath = fieldName.split("\\.");
-        if (fieldsPath.length == 1) return getSimpleTypePath(root, fieldName);
-        Join path = root.join(fieldsPath[0], JoinType.INNER);
-        for (int i = 1; i < fieldsPath.length - 1; i++) {
-            String field = fieldsPath[i];
-            path = path.join(field, JoinType.LEFT);
-        }
-        return path.get(fieldsPath[fieldsPath.length - 1]);
-    }
+    @Data
+    @AllArgsConstructor
+    private static class Values {
 
-    private Path getSimpleTypePath(Root path, String fieldName) {
-        Class javaType = getFieldClass(path, fieldName);
-        if (BeanUtils.isSimpleProperty(javaType)) {
-            return path.get(fieldName);
-        } else {
-            return path.join(fieldName).get(getIdFieldName(javaType));
-        }
-    }
+        private List values;
 
-    private Class getFieldClass(Path path, String fieldName) {
-        Class clazz = path.getJavaType();
-        try {
-            return clazz.getDeclaredField(fieldName).getType();
-        } catch (NoSuchFieldException e) {
-            throw new IllegalArgumentException("Class " + clazz + " have not field with name " + fieldName);
-        }
+        private Instant loaded;
     }
-
 }
@@ -18,10 +18,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.softjourn.coin.server.entity.TransactionType.*;
@@ -41,16 +43,20 @@ public class CoinService {
 
     private FabricService fabricService;
 
+    private DailyStatsService dailyStatsService;
+
 
     @SuppressWarnings("unused")
     @Autowired
     public CoinService(AccountsService accountsService,
                        FabricService fabricService,
                        TransactionRepository transactionRepository,
-                       TransactionMapper mapper) {
+                       TransactionMapper mapper,
+                       DailyStatsService dailyStatsService) {
         this.fabricService = fabricService;
         this.accountsService = accountsService;
         this.transactionRepository = transactionRepository;
+        this.dailyStatsService = dailyStatsService;
     }
 
     @SuppressWarnings("unused")
@@ -244,6 +250,44 @@ public class CoinService {
         return transaction;
     }
 
+    /**
+     * Moves all coins of accounts to treasury.
+     *
+     * Balances should be already known, so there are no balance queries here.
+     * Each transfer has to be signed by the account owner, so transfers are made one by one
+     * under the same lock as {@link #moveToTreasury}, but all transactions are saved in one batch.
+     *
+     * @param balances accounts with amounts to move
+     * @param comment  comment of transaction of each account
+     * @return saved transaction for each account by its ldapId
+     */
+    public synchronized Map<String, Transaction> moveAllToTreasury(Map<Account, BigDecimal> balances,
+                                                             Function<Account, String> comment) {
+        Map<String, Transaction> transactions = new HashMap<>();
+        balances.forEach((account, amount) -> {
+            Transaction transaction = new Transaction();
+            transaction.setAccount(account);
+            transaction.setAmount(amount);
+            transaction.setComment(comment.apply(account));
+            transaction.setType(TRANSFER);
+            try {
+                InvokeResponseDTO.Balance move = move(account.getEmail(), treasuryAccount, amount);
+                transaction.setTransactionId(move.getTransactionID());
+                transaction.setRemain(move.getPayload().getBalance());
+                transaction.setStatus(TransactionStatus.SUCCESS);
+            } catch (RuntimeException e) {
+                log.warn("Can't move coins of " + account.getLdapId() + " to treasury", e);
+                transaction.setStatus(TransactionStatus.FAILED);
+                transaction.setError(e.getLocalizedMessage());
+            }
+            transaction.setCreated(Instant.now());
+            transactions.put(account.getLdapId(), transaction);
+        });
+        transactionRepository.save(transactions.values());
+        dailyStatsService.record(transactions.values());
+        return transactions;
+    }
+
     private Account removeIsNewStatus(String ldapId) {
         return Optional
                 .ofNullable(accountsService.getAccount(ldapId))
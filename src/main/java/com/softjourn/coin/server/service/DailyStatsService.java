@@ -0,0 +1,264 @@
+package com.softjourn.coin.server.service;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.softjourn.coin.server.dto.AccountStatsDTO;
+import com.softjourn.coin.server.dto.PeriodStatsDTO;
+import com.softjourn.coin.server.entity.Account;
+import com.softjourn.coin.server.entity.AccountDailyStats;
+import com.softjourn.coin.server.entity.Transaction;
+import com.softjourn.coin.server.entity.TransactionStatus;
+import com.softjourn.coin.server.entity.TransactionType;
+import com.softjourn.coin.server.repository.AccountDailyStatsRepository;
+import com.softjourn.coin.server.repository.ArchivedTransactionRepository;
+import com.softjourn.coin.server.repository.TransactionRepository;
+import com.softjourn.coin.server.util.InstantJsonSerializer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps per account, type and day sums of successful transactions.
+ *
+ * Stats are updated by upsert whenever transactions are saved, and can be rebuilt
+ * from transactions table day by day by backfill job, e.g. for history made before stats existed.
+ * Days are taken in default time zone of server.
+ */
+@Slf4j
+@Service
+public class DailyStatsService {
+
+    private final AccountDailyStatsRepository statsRepository;
+
+    private final TransactionRepository transactionRepository;
+
+    private final ArchivedTransactionRepository archiveRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Stats are written in own DB transaction, so their failure never marks transaction of caller rollback only.
+     */
+    private final TransactionTemplate recordTemplate;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor();
+
+    private final int maxTop;
+
+    private final boolean backfillOnStartup;
+
+    private volatile Backfill backfill;
+
+    @Autowired
+    public DailyStatsService(AccountDailyStatsRepository statsRepository,
+                             TransactionRepository transactionRepository,
+                             ArchivedTransactionRepository archiveRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${stats.top.max-size:100}") int maxTop,
+                             @Value("${stats.backfill.on-startup:false}") boolean backfillOnStartup) {
+        this.statsRepository = statsRepository;
+        this.transactionRepository = transactionRepository;
+        this.archiveRepository = archiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recordTemplate = new TransactionTemplate(transactionManager);
+        this.recordTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxTop = maxTop;
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    /**
+     * Adds successful transactions to stats in separate DB transaction. Failures are logged only, stats can be repaired by backfill.
+     */
+    public void record(Collection<? extends Transaction> transactions) {
+        List<Transaction> successful = transactions.stream()
+                .filter(transaction -> transaction.getStatus() == TransactionStatus.SUCCESS)
+                .collect(Collectors.toList());
+        if (successful.isEmpty()) {
+            return;
+        }
+        try {
+            recordTemplate.execute(status -> {
+                successful.forEach(this::add);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("Can't update daily stats of " + successful.size() + " transactions", e);
+        }
+    }
+
+    public void record(Transaction transaction) {
+        record(Collections.singletonList(transaction));
+    }
+
+    public List<AccountDailyStats> getForAccount(String ldapId, LocalDate from, LocalDate to, Set<TransactionType> types) {
+        return statsRepository.findByAccount(ldapId, from, to, orAll(types));
+    }
+
+    /**
+     * @param monthly whether days should be summed up by months
+     */
+    public List<PeriodStatsDTO> getTotals(LocalDate from, LocalDate to, Set<TransactionType> types, boolean monthly) {
+        List<PeriodStatsDTO> days = statsRepository.findTotals(from, to, orAll(types));
+        if (!monthly) {
+            return days;
+        }
+        Map<String, PeriodStatsDTO> months = new LinkedHashMap<>();
+        days.forEach(day -> {
+            String month = YearMonth.from(LocalDate.parse(day.getPeriod())).toString();
+            PeriodStatsDTO monthStats = new PeriodStatsDTO(month, day.getType(), day.getInSum(), day.getInCount(),
+                    day.getOutSum(), day.getOutCount());
+            months.merge(month + " " + day.getType(), monthStats, PeriodStatsDTO::add);
+        });
+        return new ArrayList<>(months.values());
+    }
+
+    /**
+     * @param incoming whether accounts are ranked by received or by sent coins
+     * @param size     count of accounts, limited by configured max
+     */
+    public List<AccountStatsDTO> getTop(LocalDate from, LocalDate to, Set<TransactionType> types, boolean incoming, int size) {
+        PageRequest page = new PageRequest(0, Math.max(1, Math.min(size, maxTop)));
+        return incoming
+                ? statsRepository.findTopReceivers(from, to, orAll(types), page)
+                : statsRepository.findTopSenders(from, to, orAll(types), page);
+    }
+
+    /**
+     * Starts rebuilding stats of days from the first to the last one in background.
+     * Transaction saved right before day is rebuilt but recorded after that is counted twice,
+     * so days that still get new transactions, i.e. today, may be a bit off until they are rebuilt again.
+     *
+     * @param from first day or null for day of the first transaction
+     * @param to   last day or null for today
+     * @return started backfill or backfill that is still running
+     */
+    public synchronized Backfill startBackfill(LocalDate from, LocalDate to) {
+        if (backfill != null && backfill.getFinished() == null) {
+            return backfill;
+        }
+        LocalDate first = Optional.ofNullable(from)
+                .orElseGet(() -> Optional.ofNullable(getFirstCreated())
+                        .map(created -> created.atZone(zone).toLocalDate())
+                        .orElseGet(() -> LocalDate.now(zone)));
+        LocalDate last = Optional.ofNullable(to).orElseGet(() -> LocalDate.now(zone));
+        if (last.isBefore(first)) {
+            throw new IllegalArgumentException("Backfill end " + last + " is before its start " + first + ".");
+        }
+        Backfill started = new Backfill(first, last);
+        backfill = started;
+        backfillExecutor.submit(() -> runBackfill(started));
+        return started;
+    }
+
+    public Backfill getBackfill() {
+        return backfill;
+    }
+
+    /**
+     * Stats are filled for the whole history when table is empty, e.g. right after it was created.
+     * Should be enabled on one node only.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (backfillOnStartup && statsRepository.count() == 0 && getFirstCreated() != null) {
+            log.info("Daily stats are empty, starting backfill");
+            startBackfill(null, null);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    private Instant getFirstCreated() {
+        Instant archived = archiveRepository.findFirstCreated();
+        return archived != null ? archived : transactionRepository.findFirstCreated();
+    }
+
+    private void runBackfill(Backfill job) {
+        try {
+            for (LocalDate day = job.getFrom(); !day.isAfter(job.getTo()); day = day.plusDays(1)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                rebuild(day);
+                job.setDone(day);
+            }
+            log.info("Daily stats backfill from {} to {} completed", job.getFrom(), job.getTo());
+        } catch (Exception e) {
+            log.error("Daily stats backfill failed after " + job.getDone(), e);
+            job.setError(e.getLocalizedMessage());
+        } finally {
+            job.setFinished(Instant.now());
+        }
+    }
+
+    private void rebuild(LocalDate day) {
+        Instant start = day.atStartOfDay(zone).toInstant();
+        Instant end = day.plusDays(1).atStartOfDay(zone).toInstant();
+        transactionTemplate.execute(status -> {
+            statsRepository.deleteByDay(day);
+            return statsRepository.rebuildDay(day, start, end);
+        });
+    }
+
+    private void add(Transaction transaction) {
+        BigDecimal amount = Optional.ofNullable(transaction.getAmount()).orElse(BigDecimal.ZERO);
+        String type = Optional.ofNullable(transaction.getType()).orElse(TransactionType.UNKNOWN).name();
+        // rows saved without date get current timestamp from DB
+        LocalDate day = Optional.ofNullable(transaction.getCreated()).orElseGet(Instant::now).atZone(zone).toLocalDate();
+        Optional.ofNullable(transaction.getAccount())
+                .map(Account::getLdapId)
+                .ifPresent(ldapId -> statsRepository.add(ldapId, type, day, BigDecimal.ZERO, 0, amount, 1));
+        Optional.ofNullable(transaction.getDestination())
+                .map(Account::getLdapId)
+                .ifPresent(ldapId -> statsRepository.add(ldapId, type, day, amount, 1, BigDecimal.ZERO, 0));
+    }
+
+    private static Collection<TransactionType> orAll(Set<TransactionType> types) {
+        return types == null || types.isEmpty() ? EnumSet.allOf(TransactionType.class) : types;
+    }
+
+    @Data
+    public static class Backfill {
+
+        @JsonSerialize(using = ToStringSerializer.class)
+        private final LocalDate from;
+
+        @JsonSerialize(using = ToStringSerializer.class)
+        private final LocalDate to;
+
+        /**
+         * The last rebuilt day.
+         */
+        @JsonSerialize(using = ToStringSerializer.class)
+        private volatile LocalDate done;
+
+        @JsonSerialize(using = InstantJsonSerializer.class)
+        private volatile Instant finished;
+
+        private volatile String error;
+    }
+}
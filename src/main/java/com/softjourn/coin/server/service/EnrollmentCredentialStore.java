@@ -0,0 +1,136 @@
+package com.softjourn.coin.server.service;
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.softjourn.coin.server.entity.EnrollmentCredential;
+import com.softjourn.coin.server.repository.EnrollmentCredentialRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.jwt.JwtHelper;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps Fabric enrollment tokens in DB with in-memory cache in front of it,
+ * so tokens survive restarts and are shared between nodes.
+ */
+@Slf4j
+@Service
+public class EnrollmentCredentialStore {
+
+    private static final int LOCKS = 64;
+
+    private final EnrollmentCredentialRepository repository;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, EnrollmentCredential> credentials = new ConcurrentHashMap<>();
+
+    private final Object[] locks = new Object[LOCKS];
+
+    /**
+     * Token lifetime used when expiration can't be read from token itself.
+     */
+    private final long ttl;
+
+    /**
+     * Tokens expiring sooner than this are treated as expired.
+     */
+    private final long margin;
+
+    @Autowired
+    public EnrollmentCredentialStore(EnrollmentCredentialRepository repository,
+                                     @Value("${fabric.enroll.token.ttl:36000}") long ttl,
+                                     @Value("${fabric.enroll.token.margin:60}") long margin) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.margin = margin;
+        Arrays.setAll(locks, i -> new Object());
+    }
+
+    /**
+     * @return valid token of user or null if user should be enrolled
+     */
+    public String getToken(String email) {
+        Instant validAt = Instant.now().plusSeconds(margin);
+        EnrollmentCredential credential = credentials.get(email);
+        if (credential == null || !credential.isValid(validAt)) {
+            credential = repository.findOne(email);
+            if (credential == null || !credential.isValid(validAt)) {
+                credentials.remove(email);
+                return null;
+            }
+            credentials.put(email, credential);
+        }
+        return credential.getToken();
+    }
+
+    public void put(String email, String token) {
+        Instant now = Instant.now();
+        EnrollmentCredential credential = new EnrollmentCredential(email, token, getExpiration(token, now), now);
+        credentials.put(email, credential);
+        try {
+            repository.save(credential);
+        } catch (RuntimeException e) {
+            log.warn("Can't persist enrollment token of " + email, e);
+        }
+    }
+
+    public void evict(String email) {
+        credentials.remove(email);
+        try {
+            repository.delete(email);
+        } catch (RuntimeException e) {
+            log.debug("Enrollment token of {} was not removed", email, e);
+        }
+    }
+
+    /**
+     * Loads valid tokens of passed users to memory.
+     *
+     * @return emails that have no valid token stored
+     */
+    public Set<String> load(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<EnrollmentCredential> stored = repository
+                .findByEmailInAndExpiresAfter(emails, Instant.now().plusSeconds(margin));
+        stored.forEach(credential -> credentials.put(credential.getEmail(), credential));
+        return emails.stream()
+                .filter(email -> !credentials.containsKey(email))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Lock that should be held while enrolling user,
+     * so concurrent requests of the same user are enrolled once.
+     * Users share fixed set of locks, so locks don't pile up with users.
+     */
+    Object lockFor(String email) {
+        return locks[Math.floorMod(email.hashCode(), LOCKS)];
+    }
+
+    private Instant getExpiration(String token, Instant now) {
+        try {
+            JsonNode exp = mapper.readTree(JwtHelper.decode(token).getClaims()).path("exp");
+            if (exp.canConvertToLong()) {
+                return Instant.ofEpochSecond(exp.asLong());
+            }
+        } catch (Exception e) {
+            log.debug("Can't read expiration of enrollment token", e);
+        }
+        return now.plusSeconds(ttl);
+    }
+}
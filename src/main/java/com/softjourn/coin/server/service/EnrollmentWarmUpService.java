@@ -0,0 +1,104 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.entity.Account;
+import com.softjourn.coin.server.entity.AccountType;
+import com.softjourn.coin.server.repository.AccountRepository;
+import com.softjourn.coin.server.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fills enrollment credential store on startup for accounts that are used most,
+ * so requests after deploy or scale out don't enroll all of them at once.
+ *
+ * Tokens already stored by other nodes are only loaded, missing ones are enrolled
+ * one by one in background.
+ */
+@Slf4j
+@Service
+public class EnrollmentWarmUpService {
+
+    private final FabricService fabricService;
+
+    private final EnrollmentCredentialStore credentialStore;
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionRepository transactionRepository;
+
+    private final String treasuryAccount;
+
+    private final int activeDays;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Autowired
+    public EnrollmentWarmUpService(FabricService fabricService,
+                                   EnrollmentCredentialStore credentialStore,
+                                   AccountRepository accountRepository,
+                                   TransactionRepository transactionRepository,
+                                   @Value("${treasury.account}") String treasuryAccount,
+                                   @Value("${fabric.enroll.warm-up.active-days:7}") int activeDays) {
+        this.fabricService = fabricService;
+        this.credentialStore = credentialStore;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.treasuryAccount = treasuryAccount;
+        this.activeDays = activeDays;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        executor.submit(() -> {
+            try {
+                Set<String> missing = credentialStore.load(getWarmUpEmails());
+                log.info("Enrolling {} accounts on warm up", missing.size());
+                missing.forEach(this::enroll);
+            } catch (Exception e) {
+                log.warn("Enrollment warm up failed", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Set<String> getWarmUpEmails() {
+        Set<String> emails = new LinkedHashSet<>();
+        emails.add(treasuryAccount);
+        accountRepository.getAccountsByType(AccountType.MERCHANT, new Sort("ldapId")).stream()
+                .map(Account::getEmail)
+                .filter(Objects::nonNull)
+                .forEach(emails::add);
+        emails.addAll(transactionRepository.findActiveAccountsEmails(Instant.now().minus(activeDays, ChronoUnit.DAYS)));
+        return emails;
+    }
+
+    private void enroll(String email) {
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        try {
+            fabricService.enroll(email);
+        } catch (Exception e) {
+            log.warn("Can't enroll " + email + " on warm up", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.softjourn.coin.server.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx", false),
+
+    /**
+     * One JSON object per line.
+     */
+    NDJSON("application/x-ndjson", "ndjson", true),
+
+    CSV("text/csv", "csv", true);
+
+    private final String contentType;
+
+    private final String extension;
+
+    /**
+     * Whether file is worth gzip, xlsx is zip archive already.
+     */
+    private final boolean compressible;
+}
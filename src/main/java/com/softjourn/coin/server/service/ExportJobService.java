@@ -0,0 +1,211 @@
+package com.softjourn.coin.server.service;
+
+import com.softjourn.coin.server.dto.ExportJob;
+import com.softjourn.coin.server.dto.ExportJobStatus;
+import com.softjourn.coin.server.entity.Transaction;
+import com.softjourn.coin.server.exceptions.ExportJobNotReadyException;
+import com.softjourn.coin.server.exceptions.ExportQueueFullException;
+import com.softjourn.coin.server.exceptions.NotFoundException;
+import com.softjourn.coin.server.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Exports transactions to files in background.
+ *
+ * Jobs are queued to bounded pool and their files are written to local directory, so job
+ * can be downloaded only from the node it was submitted to. Job of the same filter and format
+ * submitted within reuse window is returned instead of starting new one.
+ * Finished jobs and their files are removed after retention time.
+ */
+@Slf4j
+@Service
+public class ExportJobService {
+
+    private static final String PART_SUFFIX = ".part";
+
+    /**
+     * Names of files written by jobs, see {@link ExportJob#getFileName()}.
+     */
+    private static final Pattern FILE_NAME = Pattern.compile("transactions-[0-9a-f-]{36}\\.("
+            + Stream.of(ExportFormat.values()).map(ExportFormat::getExtension).collect(Collectors.joining("|"))
+            + ")(" + Pattern.quote(PART_SUFFIX) + ")?");
+
+    private final TransactionExportService exportService;
+
+    private final TransactionRepository repository;
+
+    private final Path directory;
+
+    private final long reuseWindow;
+
+    private final long retention;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ExportJobService(TransactionExportService exportService,
+                            TransactionRepository repository,
+                            @Value("${transactions.export.jobs.path}") String directory,
+                            @Value("${transactions.export.jobs.workers:2}") int workers,
+                            @Value("${transactions.export.jobs.queue-size:20}") int queueSize,
+                            @Value("${transactions.export.jobs.reuse-window:600000}") long reuseWindow,
+                            @Value("${transactions.export.jobs.retention:86400000}") long retention) {
+        this.exportService = exportService;
+        this.repository = repository;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.reuseWindow = Math.min(reuseWindow, retention);
+        this.retention = retention;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize));
+    }
+
+    /**
+     * Queues export of all transactions matching filter. Page of filter is ignored, its sort is used.
+     *
+     * @return new job or not failed job of the same filter and format submitted within reuse window
+     * @throws IllegalArgumentException if filter or its sort can't be exported
+     * @throws ExportQueueFullException if too many jobs are queued
+     */
+    public synchronized ExportJob submit(GenericFilter<Transaction> filter, ExportFormat format) {
+        exportService.check(filter);
+        String key = format + "|" + TransactionExportService.getSort(filter) + "|" + TransactionCountService.key(filter);
+        Instant reuseAfter = Instant.now().minusMillis(reuseWindow);
+        Optional<ExportJob> submitted = jobs.values().stream()
+                .filter(job -> job.getKey().equals(key))
+                .filter(job -> job.getStatus() != ExportJobStatus.FAILED)
+                .filter(job -> job.getCreated().isAfter(reuseAfter))
+                .max(Comparator.comparing(ExportJob::getCreated));
+        if (submitted.isPresent()) {
+            return submitted.get();
+        }
+
+        ExportJob job = ExportJob.queue(UUID.randomUUID().toString(), key, format);
+        job.setFile(directory.resolve(job.getFileName()));
+        try {
+            executor.execute(() -> run(job, filter));
+        } catch (RejectedExecutionException e) {
+            throw new ExportQueueFullException("Too many exports are in progress, try again later.");
+        }
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    /**
+     * @throws NotFoundException if there is no such job or it was removed
+     */
+    public ExportJob get(String id) {
+        return Optional.ofNullable(jobs.get(id))
+                .orElseThrow(() -> new NotFoundException("Export job " + id + " is not found."));
+    }
+
+    /**
+     * @return file of completed job
+     * @throws ExportJobNotReadyException if job is not completed
+     */
+    public Path getFile(String id) {
+        ExportJob job = get(id);
+        if (job.getStatus() != ExportJobStatus.COMPLETED) {
+            throw new ExportJobNotReadyException("Export job " + id + " is " + job.getStatus() + ".");
+        }
+        return job.getFile();
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.export.jobs.cleanup-interval:600000}")
+    public void cleanup() {
+        Instant expired = Instant.now().minusMillis(retention);
+        jobs.values().removeIf(job -> {
+            if (job.getFinished() != null && job.getFinished().isBefore(expired)) {
+                delete(job.getFile());
+                return true;
+            }
+            return false;
+        });
+        removeOrphanFiles();
+    }
+
+    /**
+     * Jobs are not kept between restarts, so files left by previous run can't be downloaded.
+     * Only export files not modified within retention time are removed, so other files of directory
+     * and exports of other nodes sharing it are kept.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeOrphanFiles() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant expired = Instant.now().minusMillis(retention);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, file -> isExpiredExport(file, expired))) {
+            files.forEach(ExportJobService::delete);
+        } catch (IOException e) {
+            log.warn("Can't remove old exports from " + directory, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ExportJob job, GenericFilter<Transaction> filter) {
+        Path part = job.getFile().resolveSibling(job.getFileName() + PART_SUFFIX);
+        try {
+            job.start(repository.countRows(filter));
+            Files.createDirectories(directory);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part))) {
+                exportService.export(filter, job.getFormat(), out, job::setExported);
+            }
+            Files.move(part, job.getFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.finish(ExportJobStatus.COMPLETED, null);
+            log.info("Export job {} completed, {} transactions exported", job.getId(), job.getExported());
+        } catch (Exception e) {
+            log.error("Export job " + job.getId() + " failed", e);
+            delete(part);
+            job.finish(ExportJobStatus.FAILED, e.getLocalizedMessage());
+        }
+    }
+
+    private static boolean isExpiredExport(Path file, Instant expired) throws IOException {
+        return FILE_NAME.matcher(file.getFileName().toString()).matches()
+                && Files.isRegularFile(file)
+                && Files.getLastModifiedTime(file).toInstant().isBefore(expired);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Can't delete " + file, e);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.http.*;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
@@ -22,13 +23,17 @@ public class FabricServiceImpl implements FabricService {
 
     private final RestTemplate template;
 
+    private final EnrollmentCredentialStore credentialStore;
+
     @Autowired
     public FabricServiceImpl(@Value("${node.fabric.client}") String url,
                              @Value("${org.name}") String organization,
-                             RestTemplate template) {
+                             RestTemplate template,
+                             EnrollmentCredentialStore credentialStore) {
         this.url = url;
         this.organization = organization;
         this.template = template;
+        this.credentialStore = credentialStore;
 
         List<HttpMessageConverter<?>> messageConverters = new ArrayList<>();
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
@@ -47,40 +52,67 @@ public class FabricServiceImpl implements FabricService {
         request.put("orgName", organization);
 
         HttpEntity<?> httpEntity = new HttpEntity<Object>(request, headers);
+        ResponseEntity<EnrollResponseDTO> response;
         try {
-            return template.postForEntity(this.url + "enroll", httpEntity, EnrollResponseDTO.class);
+            response = template.postForEntity(this.url + "enroll", httpEntity, EnrollResponseDTO.class);
         } catch (Exception e) {
             throw new AccountEnrollException(e);
         }
+        EnrollResponseDTO body = response.getBody();
+        if (body != null && body.getToken() != null) {
+            credentialStore.put(email, body.getToken());
+        }
+        return response;
     }
 
     @Override
     public <T> T invoke(String email, String function, Object args, Class<T> responseType) {
-        EnrollResponseDTO body = this.enroll(email).getBody();
+        return post(email, "invoke", function, args, responseType);
+    }
+
+    @Override
+    public <T> T query(String email, String function, Object args, Class<T> responseType) {
+        return post(email, "query", function, args, responseType);
+    }
 
-        HttpEntity<?> httpEntity = getHttpEntity(function, args, body);
+    private <T> T post(String email, String path, String function, Object args, Class<T> responseType) {
+        HttpEntity<?> httpEntity = getHttpEntity(function, args, getToken(email));
 
         try {
-            return template.postForEntity(this.url + "invoke", httpEntity, responseType).getBody();
+            return template.postForEntity(this.url + path, httpEntity, responseType).getBody();
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() != HttpStatus.UNAUTHORIZED) {
+                throw new FabricRequestInvokeException(e);
+            }
         } catch (Exception e) {
             throw new FabricRequestInvokeException(e);
         }
-    }
-
-    @Override
-    public <T> T query(String email, String function, Object args, Class<T> responseType) {
-        EnrollResponseDTO body = this.enroll(email).getBody();
-
-        HttpEntity<?> httpEntity = getHttpEntity(function, args, body);
 
+        // stored token was revoked, enroll again and retry once
+        credentialStore.evict(email);
+        httpEntity = getHttpEntity(function, args, getToken(email));
         try {
-            return template.postForEntity(this.url + "query", httpEntity, responseType).getBody();
+            return template.postForEntity(this.url + path, httpEntity, responseType).getBody();
         } catch (Exception e) {
             throw new FabricRequestInvokeException(e);
         }
     }
 
-    private HttpEntity<?> getHttpEntity(String function, Object args, EnrollResponseDTO body) {
+    private String getToken(String email) {
+        String token = credentialStore.getToken(email);
+        if (token != null) {
+            return token;
+        }
+        synchronized (credentialStore.lockFor(email)) {
+            token = credentialStore.getToken(email);
+            if (token == null) {
+                token = this.enroll(email).getBody().getToken();
+            }
+            return token;
+        }
+    }
+
+    private HttpEntity<?> getHttpEntity(String function, Object args, String token) {
         Map<String, Object> request = new HashMap<>();
         request.put("fcn", function);
         request.put("args", args);
@@ -90,7 +122,7 @@ public class FabricServiceImpl implements FabricService {
 
         HttpHeaders headers = new HttpHeaders();
         headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-        headers.add("Authorization", "Bearer " + body.getToken());
+        headers.add("Authorization", "Bearer " + token);
 
         return new HttpEntity<Object>(request, headers);
     }
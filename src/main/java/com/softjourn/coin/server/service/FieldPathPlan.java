@@ -0,0 +1,123 @@
+package com.softjourn.coin.server.service;
+
+import javax.persistence.Entity;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.softjourn.common.utils.ReflectionUtil.getIdFieldName;
+import static com.softjourn.common.utils.ReflectionUtil.getIdFieldType;
+import static com.softjourn.common.utils.ReflectionUtil.tryToCastValue;
+
+/**
+ * How to get criteria path of filtered field and cast values for it.
+ *
+ * Plan is resolved with metamodel and reflection once per entity and field
+ * and is reused by all filters, so building predicate only walks prepared joins.
+ */
+final class FieldPathPlan {
+
+    private static final Map<String, FieldPathPlan> PLANS = new ConcurrentHashMap<>();
+
+    private final Kind kind;
+
+    /**
+     * Attributes names from root to filtered attribute.
+     */
+    private final String[] attributes;
+
+    /**
+     * Java type of filtered attribute, values are casted to it.
+     */
+    private final Class<?> valueType;
+
+    private FieldPathPlan(Kind kind, String[] attributes, Class<?> valueType) {
+        this.kind = kind;
+        this.attributes = attributes;
+        this.valueType = valueType;
+    }
+
+    /**
+     * @param root  root of query, its model is used to resolve plan first time
+     * @param field field name or path separated by dots
+     * @throws IllegalArgumentException if entity has no such field
+     */
+    static FieldPathPlan of(Root<?> root, String field) {
+        String key = root.getJavaType().getName() + "#" + field;
+        FieldPathPlan plan = PLANS.get(key);
+        if (plan == null) {
+            plan = resolve(root, field);
+            PLANS.putIfAbsent(key, plan);
+        }
+        return plan;
+    }
+
+    Path<?> getPath(Root<?> root) {
+        switch (kind) {
+            case ENTITY_ID:
+                return root.join(attributes[0], JoinType.LEFT).get(attributes[1]);
+            case COMPOSITE:
+                From<?, ?> from = root.join(attributes[0], JoinType.INNER);
+                for (int i = 1; i < attributes.length - 1; i++) {
+                    from = from.join(attributes[i], JoinType.LEFT);
+                }
+                return from.get(attributes[attributes.length - 1]);
+            default:
+                return root.get(attributes[0]);
+        }
+    }
+
+    /**
+     * Entity fields are compared by id, so only values of id type can be used for them.
+     *
+     * @throws IllegalArgumentException if value can't be compared with field
+     */
+    void checkValue(Object value) {
+        if (kind == Kind.ENTITY_ID && value != null && !valueType.isInstance(value)) {
+            throw new IllegalArgumentException("Can't create criteria based on field " + attributes[0] + " with value " + value + ".");
+        }
+    }
+
+    Object cast(Object value) {
+        return tryToCastValue(valueType, value);
+    }
+
+    private static FieldPathPlan resolve(Root<?> root, String field) {
+        String[] attributes = field.split("\\.");
+        if (attributes.length > 1) {
+            ManagedType<?> type = root.getModel();
+            Class<?> javaType = null;
+            for (int i = 0; i < attributes.length; i++) {
+                Attribute<?, ?> attribute = type.getAttribute(attributes[i]);
+                javaType = attribute.getJavaType();
+                if (i < attributes.length - 1) {
+                    Type<?> next = attribute instanceof PluralAttribute
+                            ? ((PluralAttribute<?, ?, ?>) attribute).getElementType()
+                            : ((SingularAttribute<?, ?>) attribute).getType();
+                    if (!(next instanceof ManagedType)) {
+                        throw new IllegalArgumentException("Field " + attributes[i] + " of " + field + " has no fields.");
+                    }
+                    type = (ManagedType<?>) next;
+                }
+            }
+            return new FieldPathPlan(Kind.COMPOSITE, attributes, javaType);
+        }
+        Class<?> fieldType = root.getModel().getAttribute(field).getJavaType();
+        if (fieldType.isAnnotationPresent(Entity.class)) {
+            return new FieldPathPlan(Kind.ENTITY_ID, new String[]{field, getIdFieldName(fieldType)}, getIdFieldType(fieldType));
+        }
+        return new FieldPathPlan(Kind.ATTRIBUTE, attributes, fieldType);
+    }
+
+    private enum Kind {
+        ATTRIBUTE, ENTITY_ID, COMPOSITE
+    }
+}
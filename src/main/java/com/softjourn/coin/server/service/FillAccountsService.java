@@ -35,12 +35,16 @@ public class FillAccountsService {
 
     private final TransactionRepository transactionRepository;
 
+    private final DailyStatsService dailyStatsService;
+
     @Autowired
-    public FillAccountsService(CoinService coinService, FabricService fabricService, AccountsService accountsService, TransactionRepository transactionRepository) {
+    public FillAccountsService(CoinService coinService, FabricService fabricService, AccountsService accountsService,
+                               TransactionRepository transactionRepository, DailyStatsService dailyStatsService) {
         this.coinService = coinService;
         this.fabricService = fabricService;
         this.accountsService = accountsService;
         this.transactionRepository = transactionRepository;
+        this.dailyStatsService = dailyStatsService;
     }
 
     public void fillAccounts(MultipartFile multipartFile) {
@@ -74,6 +78,7 @@ public class FillAccountsService {
     }
 
     private void saveTransactions(List<AccountFillDTO> accountsToFill, InvokeResponseDTO batchTransfer) {
+        List<Transaction> saved = new ArrayList<>();
         accountsService.getAll().forEach(account -> {
             accountsToFill.forEach(dto -> {
                 if (account.getEmail().equals(dto.getAccount())) {
@@ -83,10 +88,11 @@ public class FillAccountsService {
                     transaction.setAmount(dto.getCoins());
                     transaction.setDestination(account);
                     transaction.setType(TransactionType.REGULAR_REPLENISHMENT);
-                    transactionRepository.save(transaction);
+                    saved.add(transactionRepository.save(transaction));
                 }
             });
         });
+        dailyStatsService.record(saved);
     }
 
     public void getAccountDTOTemplate(Writer writer) throws IOException {
@@ -2,28 +2,25 @@ package com.softjourn.coin.server.service;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.softjourn.coin.server.dto.PageRequestImpl;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 
-import javax.persistence.Entity;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Join;
-import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
-import static com.softjourn.common.utils.ReflectionUtil.getIdFieldName;
-import static com.softjourn.common.utils.ReflectionUtil.getIdFieldType;
 import static com.softjourn.common.utils.ReflectionUtil.tryToCastValue;
 
 
@@ -31,6 +28,18 @@ import static com.softjourn.common.utils.ReflectionUtil.tryToCastValue;
 @NoArgsConstructor
 public class GenericFilter<T> implements Specification<T> {
 
+    /**
+     * Max count of values in one SQL IN list, power of two.
+     */
+    static final int IN_CHUNK_SIZE = 256;
+
+    /**
+     * Max count of values of one in condition.
+     */
+    static final int MAX_IN_SIZE = 4096;
+
+    static final char LIKE_ESCAPE = '\\';
+
     private List<Condition> conditions = new ArrayList<>();
 
     private PageRequestImpl pageable;
@@ -49,9 +58,7 @@ public class GenericFilter<T> implements Specification<T> {
 
     @Override
     public Predicate toPredicate(Root<T> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder criteriaBuilder) {
-        Predicate[] predicates = conditions.stream()
-                .map(condition -> buildPredicate(root, criteriaBuilder, criteriaQuery, condition))
-                .toArray(Predicate[]::new);
+        Predicate[] predicates = buildPredicates(root, criteriaBuilder, criteriaQuery, conditions);
         return operation == BoolOperation.AND ? criteriaBuilder.and(predicates) : criteriaBuilder.or(predicates);
     }
 
@@ -78,117 +85,259 @@ public class GenericFilter<T> implements Specification<T> {
         return filter;
     }
 
+    /**
+     * Greatest lower bound of field that every matched row satisfies. Only conditions required
+     * by filter are taken, i.e. top level and nested and conditions of kind eq, gt and between.
+     *
+     * @return bound casted to type or null if filter doesn't bound field from below
+     */
+    public <V extends Comparable<? super V>> V getLowerBound(String field, Class<V> type) {
+        if (conditions == null || (operation == BoolOperation.OR && conditions.size() > 1)) {
+            return null;
+        }
+        return getLowerBound(conditions, field, type);
+    }
+
+    private static <V extends Comparable<? super V>> V getLowerBound(List<Condition> conditions, String field, Class<V> type) {
+        V bound = null;
+        for (Condition condition : conditions) {
+            V conditionBound = null;
+            if (condition.comparison == Comparison.and && condition.nested != null) {
+                conditionBound = getLowerBound(condition.nested, field, type);
+            } else if (field.equals(condition.field)) {
+                conditionBound = getLowerBound(condition, type);
+            }
+            if (conditionBound != null && (bound == null || conditionBound.compareTo(bound) > 0)) {
+                bound = conditionBound;
+            }
+        }
+        return bound;
+    }
+
+    private static <V> V getLowerBound(Condition condition, Class<V> type) {
+        Object value = null;
+        if (condition.comparison == Comparison.eq || condition.comparison == Comparison.gt) {
+            value = condition.value;
+        } else if (condition.comparison == Comparison.between
+                && condition.value instanceof Collection && ((Collection) condition.value).size() == 2) {
+            value = ((Collection<?>) condition.value).iterator().next();
+        }
+        return value == null ? null : type.cast(tryToCastValue(type, value));
+    }
+
+    private Predicate[] buildPredicates(Root<T> root, CriteriaBuilder criteriaBuilder, CriteriaQuery<?> criteriaQuery,
+                                        List<Condition> conditions) {
+        if (conditions == null) {
+            return new Predicate[0];
+        }
+        return conditions.stream()
+                .map(condition -> buildPredicate(root, criteriaBuilder, criteriaQuery, condition))
+                .toArray(Predicate[]::new);
+    }
+
     private Predicate buildPredicate(Root<T> root, CriteriaBuilder criteriaBuilder, CriteriaQuery<?> criteriaQuery, Condition condition) {
+        if (condition.comparison == null) {
+            throw new IllegalArgumentException("Wrong condition " + condition + " specified.");
+        }
         switch (condition.comparison) {
             case eq:
                 return buildEqualPredicate(criteriaBuilder, root, condition);
+            case ne:
+                return buildNotEqualPredicate(criteriaBuilder, root, condition);
             case gt:
                 return buildGreaterThanPredicate(criteriaBuilder, root, condition);
             case lt:
                 return buildLesThanPredicate(criteriaBuilder, root, condition);
+            case between:
+                return buildBetweenPredicate(criteriaBuilder, root, condition);
             case in:
                 return buildInPredicate(criteriaBuilder, root, condition);
+            case notIn:
+                return buildNotInPredicate(criteriaBuilder, root, condition);
+            case like:
+                return buildLikePredicate(criteriaBuilder, root, condition, false);
+            case startsWith:
+                return buildLikePredicate(criteriaBuilder, root, condition, true);
+            case isNull:
+                return buildIsNullPredicate(criteriaBuilder, root, condition);
+            case and:
+                return criteriaBuilder.and(buildPredicates(root, criteriaBuilder, criteriaQuery, condition.getNested()));
+            case or:
+                return criteriaBuilder.or(buildPredicates(root, criteriaBuilder, criteriaQuery, condition.getNested()));
+            case not:
+                return criteriaBuilder.not(criteriaBuilder.and(buildPredicates(root, criteriaBuilder, criteriaQuery, condition.getNested())));
             default:
                 throw new IllegalArgumentException("Wrong condition " + condition + " specified.");
         }
     }
 
     private Predicate buildEqualPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
-        Path fieldPath = getFieldPath(root, condition);
+        FieldPathPlan plan = getPlan(root, condition);
+        Path fieldPath = plan.getPath(root);
         if (condition.value == null) {
             return criteriaBuilder.isNull(fieldPath);
         } else {
-            Object value = getCastedValue(fieldPath, condition.value);
-            return criteriaBuilder.equal(fieldPath, value);
+            return criteriaBuilder.equal(fieldPath, plan.cast(condition.value));
+        }
+    }
+
+    private Predicate buildNotEqualPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
+        FieldPathPlan plan = getPlan(root, condition);
+        Path fieldPath = plan.getPath(root);
+        if (condition.value == null) {
+            return criteriaBuilder.isNotNull(fieldPath);
+        } else {
+            return criteriaBuilder.notEqual(fieldPath, plan.cast(condition.value));
         }
     }
 
     @SuppressWarnings("unchecked")
     private Predicate buildGreaterThanPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
-        Path fieldPath = getFieldPath(root, condition);
-        Object value = getCastedValue(fieldPath, condition.value);
-        return criteriaBuilder.greaterThanOrEqualTo(fieldPath, (Comparable) value);
+        FieldPathPlan plan = getPlan(root, condition);
+        return criteriaBuilder.greaterThanOrEqualTo((Path) plan.getPath(root), (Comparable) plan.cast(condition.value));
     }
 
     @SuppressWarnings("unchecked")
     private Predicate buildLesThanPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
-        Path fieldPath = getFieldPath(root, condition);
-        Object value = getCastedValue(fieldPath, condition.value);
-        return criteriaBuilder.lessThanOrEqualTo(fieldPath, (Comparable) value);
+        FieldPathPlan plan = getPlan(root, condition);
+        return criteriaBuilder.lessThanOrEqualTo((Path) plan.getPath(root), (Comparable) plan.cast(condition.value));
     }
 
+    /**
+     * Value should be collection of lower and upper bound, both inclusive. Null bound means no limit.
+     */
     @SuppressWarnings("unchecked")
-    private Predicate buildInPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
-        if (condition.value instanceof Collection) {
-            if (((Collection) condition.value).isEmpty()) {
-                return criteriaBuilder.isTrue(criteriaBuilder.literal(true));
-            }
-            return getFieldPath(root, condition).in((Collection<?>) condition.value);
-        } else throw new IllegalArgumentException("Method buildInPredicate can be applied only for collections");
+    private Predicate buildBetweenPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
+        if (!(condition.value instanceof Collection) || ((Collection) condition.value).size() != 2) {
+            throw new IllegalArgumentException("Condition between on field " + condition.field + " should have two values.");
+        }
+        Iterator<?> bounds = ((Collection<?>) condition.value).iterator();
+        Object from = bounds.next();
+        Object to = bounds.next();
+
+        FieldPathPlan plan = getPlan(root, condition);
+        plan.checkValue(to);
+        Path path = plan.getPath(root);
+        if (from != null && to != null) {
+            return criteriaBuilder.between(path, (Comparable) plan.cast(from), (Comparable) plan.cast(to));
+        } else if (from != null) {
+            return criteriaBuilder.greaterThanOrEqualTo(path, (Comparable) plan.cast(from));
+        } else if (to != null) {
+            return criteriaBuilder.lessThanOrEqualTo(path, (Comparable) plan.cast(to));
+        }
+        return criteriaBuilder.conjunction();
+    }
+
+    /**
+     * Like takes pattern with % and _ wildcards as is, starts with escapes them in value.
+     * Prefix patterns can be served by index of field.
+     */
+    @SuppressWarnings("unchecked")
+    private Predicate buildLikePredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition, boolean prefix) {
+        if (!(condition.value instanceof String)) {
+            throw new IllegalArgumentException("Condition " + condition.comparison + " on field " + condition.field + " should have text value.");
+        }
+        FieldPathPlan plan = getPlan(root, condition);
+        Path path = plan.getPath(root);
+        if (!String.class.equals(path.getJavaType())) {
+            throw new IllegalArgumentException("Condition " + condition.comparison + " can't be applied to not text field " + condition.field + ".");
+        }
+        String value = (String) condition.value;
+        return criteriaBuilder.like(path, prefix ? prefixPattern(value) : value, LIKE_ESCAPE);
     }
 
-    private Object getCastedValue(Path fieldPath, Object value) {
-        Class fieldClass = fieldPath.getJavaType();
-        return tryToCastValue(fieldClass, value);
+    /**
+     * @return like pattern matching text starting with prefix, should be used with {@link #LIKE_ESCAPE}
+     */
+    static String prefixPattern(String prefix) {
+        return prefix.replaceAll("([\\\\%_])", "\\\\$1") + "%";
     }
 
-    private Path getFieldPath(Root<T> root, Condition condition) {
-        if (isCompositeField(condition.getField())) {
-            return getPathByCompositeField(root, condition.getField());
-        } else if (condition.value instanceof Collection) {
-            return getPathBySimpleFieldOrEntityFieldIdForInCause(root, condition);
-        } else {
-            return getPathBySimpleFieldOrEntityFieldId(root, condition);
+    /**
+     * Value true or missing value means field is null, false means it is not null.
+     */
+    private Predicate buildIsNullPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
+        Path<?> fieldPath = FieldPathPlan.of(root, condition.field).getPath(root);
+        return Boolean.FALSE.equals(condition.value) ? criteriaBuilder.isNotNull(fieldPath) : criteriaBuilder.isNull(fieldPath);
+    }
+
+    /**
+     * Values are split into chunks of at most {@link #IN_CHUNK_SIZE} joined by OR and every chunk
+     * is padded to power of two size by repeating its last value. So statements of lists with
+     * any size have a few shapes only and their plans are reused from Hibernate plan cache.
+     */
+    private Predicate buildInPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
+        if (getInValues(condition).isEmpty()) {
+            return criteriaBuilder.isTrue(criteriaBuilder.literal(true));
+        }
+        List<Object> values = getNotNullInValues(condition);
+        if (values.isEmpty()) {
+            // nothing is equal to null
+            return criteriaBuilder.disjunction();
         }
+        return buildInChunks(criteriaBuilder, root, condition, values);
     }
 
-    @SuppressWarnings("OptionalGetWithoutIsPresent")
-    private Path getPathBySimpleFieldOrEntityFieldIdForInCause(Root<T> root, Condition condition) {
-        if (condition.value instanceof Collection) {
-            return  ((Collection<?>) condition.value).stream()
-                    .map(val -> getPathBySimpleFieldOrEntityFieldId(root, condition.field, val))
-                    .findFirst()
-                    .orElseThrow(() -> new IllegalArgumentException("Value for IN cause should be not empty."));
-        } else {
-            throw new IllegalArgumentException("Value for IN cause should be collection.");
+    /**
+     * Empty list or list of nulls excludes nothing, so all rows are matched.
+     */
+    private Predicate buildNotInPredicate(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition) {
+        List<Object> values = getNotNullInValues(condition);
+        if (values.isEmpty()) {
+            return criteriaBuilder.conjunction();
         }
+        return criteriaBuilder.not(buildInChunks(criteriaBuilder, root, condition, values));
     }
 
-    private Path getPathBySimpleFieldOrEntityFieldId(Root<T> root, Condition condition) {
-        return getPathBySimpleFieldOrEntityFieldId(root, condition.field, condition.value);
+    private Predicate buildInChunks(CriteriaBuilder criteriaBuilder, Root<T> root, Condition condition, List<Object> values) {
+        Path<?> fieldPath = getPlan(root, condition).getPath(root);
+        List<Predicate> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += IN_CHUNK_SIZE) {
+            chunks.add(fieldPath.in(pad(values.subList(from, Math.min(from + IN_CHUNK_SIZE, values.size())))));
+        }
+        return chunks.size() == 1 ? chunks.get(0) : criteriaBuilder.or(chunks.toArray(new Predicate[chunks.size()]));
     }
 
-    private Path getPathByCompositeField(Root<T> root, String fieldName) {
-        String[] fieldsPath = fieldsPath(fieldName);
-        if (fieldsPath.length == 1) return root.get(fieldName);
-        Join path = root.join(fieldsPath[0], JoinType.INNER);
-        for (int i = 1; i < fieldsPath.length - 1; i++) {
-            String field = fieldsPath[i];
-            path = path.join(field, JoinType.LEFT);
+    private static Collection<?> getInValues(Condition condition) {
+        if (!(condition.value instanceof Collection)) {
+            throw new IllegalArgumentException("Condition " + condition.comparison + " on field " + condition.field + " should have list of values.");
         }
-        return path.get(fieldsPath[fieldsPath.length - 1]);
+        return (Collection<?>) condition.value;
     }
 
-    private Path getPathBySimpleFieldOrEntityFieldId(Root<T> root, String fieldName, Object value) {
-        Class fieldType = root.getModel().getAttribute(fieldName).getJavaType();
-        if (fieldType.isAnnotationPresent(Entity.class)) {
-            Class fieldIdType = getIdFieldType(fieldType);
-            if (fieldIdType.isInstance(value) || value == null) {
-                return root.join(fieldName, JoinType.LEFT).get(getIdFieldName(fieldType));
-            } else {
-                throw new IllegalArgumentException("Can't create criteria based on field " + fieldName + " with value " + value + ".");
-            }
-        } else {
-            return root.get(fieldName);
+    private static List<Object> getNotNullInValues(Condition condition) {
+        List<Object> values = getInValues(condition).stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (values.size() > MAX_IN_SIZE) {
+            throw new IllegalArgumentException("Condition on field " + condition.field + " can't have more than " + MAX_IN_SIZE + " values.");
         }
+        return values;
     }
 
-    private boolean isCompositeField(String fielsName) {
-        return fielsName.contains(".");
+    private static List<Object> pad(List<Object> values) {
+        int size = Integer.highestOneBit(values.size());
+        if (size < values.size()) {
+            size <<= 1;
+        }
+        List<Object> padded = new ArrayList<>(size);
+        padded.addAll(values);
+        Object last = values.get(values.size() - 1);
+        while (padded.size() < size) {
+            padded.add(last);
+        }
+        return padded;
     }
 
-    private String[] fieldsPath(String compositeField) {
-        return compositeField.split("\\.");
+    private FieldPathPlan getPlan(Root<T> root, Condition condition) {
+        FieldPathPlan plan = FieldPathPlan.of(root, condition.field);
+        if (condition.value instanceof Collection) {
+            plan.checkValue(((Collection<?>) condition.value).stream().findFirst().orElse(null));
+        } else {
+            plan.checkValue(condition.value);
+        }
+        return plan;
     }
 
     public enum BoolOperation {
@@ -196,11 +345,15 @@ public class GenericFilter<T> implements Specification<T> {
     }
 
     public enum Comparison {
-        eq, in, gt, lt
+        eq, ne, in, notIn, gt, lt, between, like, startsWith, isNull,
+
+        /**
+         * Groups of nested conditions, field and value are not used.
+         */
+        and, or, not
     }
 
     @Data
-    @AllArgsConstructor
     @NoArgsConstructor
     public static class Condition {
         private String field;
@@ -209,6 +362,19 @@ public class GenericFilter<T> implements Specification<T> {
 
         private Comparison comparison;
 
+        private List<Condition> nested = new ArrayList<>();
+
+        public Condition(String field, Object value, Comparison comparison) {
+            this.field = field;
+            this.value = value;
+            this.comparison = comparison;
+        }
+
+        @JsonIgnore
+        public boolean isGroup() {
+            return comparison == Comparison.and || comparison == Comparison.or || comparison == Comparison.not;
+        }
+
         public static Condition eq(String field, Object value) {
             return new Condition(field, value, Comparison.eq);
         }
@@ -224,5 +390,51 @@ public class GenericFilter<T> implements Specification<T> {
         public static Condition lt(String field, Object value) {
             return new Condition(field, value, Comparison.lt);
         }
+
+        public static Condition ne(String field, Object value) {
+            return new Condition(field, value, Comparison.ne);
+        }
+
+        public static Condition notIn(String field, Object value) {
+            return new Condition(field, value, Comparison.notIn);
+        }
+
+        public static Condition between(String field, Object from, Object to) {
+            return new Condition(field, Arrays.asList(from, to), Comparison.between);
+        }
+
+        public static Condition like(String field, String pattern) {
+            return new Condition(field, pattern, Comparison.like);
+        }
+
+        public static Condition startsWith(String field, String prefix) {
+            return new Condition(field, prefix, Comparison.startsWith);
+        }
+
+        public static Condition isNull(String field) {
+            return new Condition(field, true, Comparison.isNull);
+        }
+
+        public static Condition isNotNull(String field) {
+            return new Condition(field, false, Comparison.isNull);
+        }
+
+        public static Condition allOf(Condition... conditions) {
+            return group(Comparison.and, conditions);
+        }
+
+        public static Condition anyOf(Condition... conditions) {
+            return group(Comparison.or, conditions);
+        }
+
+        public static Condition not(Condition... conditions) {
+            return group(Comparison.not, conditions);
+        }
+
+        private static Condition group(Comparison comparison, Condition... conditions) {
+            Condition group = new Condition(null, null, comparison);
+            group.nested = Arrays.asList(conditions);
+            return group;
+        }
     }
 }
@@ -0,0 +1,131 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.entity.AccountImage;
+import com.softjourn.coin.server.entity.ImageBlob;
+import com.softjourn.coin.server.repository.AccountImageRepository;
+import com.softjourn.coin.server.repository.ImageBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.transaction.Transactional;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Content-addressed images of accounts.
+ *
+ * Each distinct image is stored once under its SHA-256, accounts reference images by hash.
+ * Blobs without references are swept after grace period, so blob that is being uploaded
+ * is never removed before account references it. Store and sweep of the same blob are
+ * serialized by lock of its row, and store writes file again if it was swept meanwhile.
+ */
+@Slf4j
+@Service
+public class ImageBlobService {
+
+    private final ImageBlobRepository blobRepository;
+
+    private final AccountImageRepository accountImageRepository;
+
+    private final ImageStorageService imageStorageService;
+
+    private final ImageCache imageCache;
+
+    private final ThumbnailService thumbnailService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long sweepGrace;
+
+    private final int sweepBatchSize;
+
+    @Autowired
+    public ImageBlobService(ImageBlobRepository blobRepository,
+                            AccountImageRepository accountImageRepository,
+                            ImageStorageService imageStorageService,
+                            ImageCache imageCache,
+                            ThumbnailService thumbnailService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${image.blobs.sweep-grace:86400}") long sweepGrace,
+                            @Value("${image.blobs.sweep-batch-size:100}") int sweepBatchSize) {
+        this.blobRepository = blobRepository;
+        this.accountImageRepository = accountImageRepository;
+        this.imageStorageService = imageStorageService;
+        this.imageCache = imageCache;
+        this.thumbnailService = thumbnailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sweepGrace = sweepGrace;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    /**
+     * Stores image and makes it image of account.
+     *
+     * @return blob name ({@code <hash>.<extension>})
+     */
+    @Transactional
+    public String store(String ldapId, MultipartFile file, String extension) {
+        String hash = imageStorageService.storeBlob(file, extension);
+        Instant now = Instant.now();
+
+        ImageBlob blob = blobRepository.findOneForUpdate(hash);
+        if (blob == null) {
+            blob = new ImageBlob(hash, extension, file.getSize(), now, now);
+        } else {
+            blob.setUpdated(now);
+            if (!blob.getExtension().equals(extension)) {
+                // the same content was stored with other extension before
+                imageStorageService.deleteBlob(hash + "." + extension);
+            }
+        }
+        blobRepository.save(blob);
+        if (!imageStorageService.blobExists(blob.getName())) {
+            // file was removed by sweep before row was locked
+            imageStorageService.storeBlob(file, blob.getExtension());
+        }
+        accountImageRepository.save(new AccountImage(ldapId, hash, now));
+
+        thumbnailService.generateAsync(imageStorageService.blobUri(blob.getName()));
+        return blob.getName();
+    }
+
+    /**
+     * @param name blob name ({@code <hash>.<extension>})
+     * @return path of blob relative to images storage
+     */
+    public String getUri(String name) {
+        return imageStorageService.blobUri(name);
+    }
+
+    @Scheduled(fixedDelayString = "${image.blobs.sweep-interval:3600000}")
+    public void sweep() {
+        Instant before = Instant.now().minusSeconds(sweepGrace);
+        List<ImageBlob> unreferenced;
+        do {
+            unreferenced = blobRepository.findUnreferenced(before, new PageRequest(0, sweepBatchSize));
+            for (ImageBlob blob : unreferenced) {
+                Boolean deleted = transactionTemplate.execute(status -> {
+                    if (blobRepository.findOneForUpdate(blob.getHash()) == null
+                            || blobRepository.deleteIfUnreferenced(blob.getHash(), before) == 0) {
+                        return false;
+                    }
+                    // file is removed while row is locked, so store of the same blob waits for it
+                    imageStorageService.deleteBlob(blob.getName());
+                    return true;
+                });
+                if (deleted) {
+                    imageCache.invalidate(imageStorageService.blobUri(blob.getName()));
+                    log.info("Unreferenced image {} is removed", blob.getName());
+                }
+            }
+        } while (unreferenced.size() == sweepBatchSize);
+    }
+}
@@ -0,0 +1,97 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.exceptions.NotFoundException;
+import com.softjourn.coin.server.util.CachedImage;
+import com.softjourn.coin.server.util.LruCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Keeps content of most used images in memory.
+ *
+ * Entries are invalidated by uploads made on this node. Files replaced by other nodes
+ * are noticed after revalidate interval, when cached entry is compared with file attributes.
+ */
+@Slf4j
+@Service
+public class ImageCache {
+
+    private final ImageStorageService imageStorageService;
+
+    private final LruCache<String, CachedImage> cache;
+
+    private final long maxEntrySize;
+
+    private final long revalidateInterval;
+
+    @Autowired
+    public ImageCache(ImageStorageService imageStorageService,
+                      @Value("${image.cache.max-size:33554432}") long maxSize,
+                      @Value("${image.cache.max-entry-size:1048576}") long maxEntrySize,
+                      @Value("${image.cache.revalidate-interval:60000}") long revalidateInterval) {
+        this.imageStorageService = imageStorageService;
+        this.cache = new LruCache<>(image -> image.getByteArray().length, maxSize);
+        this.maxEntrySize = maxEntrySize;
+        this.revalidateInterval = revalidateInterval;
+    }
+
+    /**
+     * @param uri path relative to images storage
+     * @return cached image or file resource if image is too large to be cached
+     * @throws NotFoundException if there is no image under passed uri
+     */
+    public Resource get(String uri) {
+        CachedImage cached = cache.get(uri);
+        if (cached != null && System.currentTimeMillis() - cached.getLoaded() < revalidateInterval) {
+            return cached;
+        }
+
+        File file;
+        try {
+            file = imageStorageService.getFile(uri);
+        } catch (NotFoundException e) {
+            cache.remove(uri);
+            throw e;
+        }
+
+        if (cached != null && cached.lastModified() == file.lastModified()
+                && cached.getByteArray().length == file.length()) {
+            CachedImage revalidated = new CachedImage(cached.getByteArray(), cached.getFilename(), cached.lastModified());
+            cache.put(uri, revalidated);
+            return revalidated;
+        }
+        if (file.length() > maxEntrySize) {
+            cache.remove(uri);
+            return new FileSystemResource(file);
+        }
+        try {
+            long lastModified = file.lastModified();
+            CachedImage image = new CachedImage(Files.readAllBytes(file.toPath()), file.getName(), lastModified);
+            cache.put(uri, image);
+            return image;
+        } catch (IOException e) {
+            log.warn("Can't read image " + uri, e);
+            return new FileSystemResource(file);
+        }
+    }
+
+    /**
+     * Removes all cached images which uri starts with passed prefix.
+     */
+    public void invalidate(String prefix) {
+        cache.removeIf(uri -> uri.startsWith(prefix));
+    }
+
+    public LruCache.Stats getStats() {
+        return cache.getStats();
+    }
+}
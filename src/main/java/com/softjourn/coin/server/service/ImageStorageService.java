@@ -0,0 +1,208 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.exceptions.FileTooLargeException;
+import com.softjourn.coin.server.exceptions.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores uploaded images on disk.
+ *
+ * Upload is streamed to temp file in target directory and moved in place atomically,
+ * so readers never see partially written image. Content-addressed blobs are kept
+ * in {@code blobs/<first two chars of hash>/<hash>.<extension>}.
+ */
+@Slf4j
+@Service
+public class ImageStorageService {
+
+    private static final String TEMP_PREFIX = ".upload-";
+
+    private static final long CHUNK_SIZE = 64 * 1024;
+
+    private static final String BLOBS_DIRECTORY = "blobs";
+
+    private final Path root;
+
+    private final long maxSize;
+
+    @Autowired
+    public ImageStorageService(@Value("${image.storage.path}") String imageStoragePath,
+                               @Value("${image.upload.max-size:5242880}") long maxSize) {
+        this.root = Paths.get(imageStoragePath).toAbsolutePath().normalize();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Stores file under name derived from SHA-256 of its content.
+     * If the same content is already stored, existing file is kept.
+     *
+     * @param file      uploaded file
+     * @param extension extension of stored file
+     * @return hex SHA-256 of content
+     * @throws FileTooLargeException if file is bigger than allowed
+     */
+    public String storeBlob(MultipartFile file, String extension) {
+        if (file.getSize() > maxSize) {
+            throw new FileTooLargeException(tooLargeMessage());
+        }
+        Path blobs = root.resolve(BLOBS_DIRECTORY);
+        Path temp = null;
+        try {
+            Files.createDirectories(blobs);
+            temp = Files.createTempFile(blobs, TEMP_PREFIX, ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            copy(new DigestInputStream(file.getInputStream(), digest), temp);
+            String hash = toHex(digest.digest());
+
+            Path target = resolve(blobUri(hash + "." + extension));
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                move(temp, target);
+                temp = null;
+            }
+            return hash;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Can not store image " + file.getOriginalFilename(), e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * @param name blob file name ({@code <hash>.<extension>})
+     * @return path of blob relative to images storage
+     */
+    public String blobUri(String name) {
+        return "/" + BLOBS_DIRECTORY + "/" + name.substring(0, 2) + "/" + name;
+    }
+
+    /**
+     * @param name blob file name ({@code <hash>.<extension>})
+     */
+    public boolean blobExists(String name) {
+        return Files.exists(resolve(blobUri(name)));
+    }
+
+    /**
+     * Deletes blob together with all its variants.
+     *
+     * @param name blob file name ({@code <hash>.<extension>})
+     */
+    public void deleteBlob(String name) {
+        Path blob = resolve(blobUri(name));
+        if (!Files.isDirectory(blob.getParent())) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(blob.getParent(), name + "*")) {
+            files.forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("Can't delete blob " + name, e);
+        }
+    }
+
+    /**
+     * Stores derived image (e.g. thumbnail) under passed uri keeping other files in its directory.
+     *
+     * @param content image bytes
+     * @param uri     path relative to images storage
+     */
+    public void storeVariant(byte[] content, String uri) throws IOException {
+        Path target = resolve(uri);
+        Path directory = target.getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, TEMP_PREFIX, ".tmp");
+        try {
+            Files.write(temp, content);
+            move(temp, target);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * @param uri path relative to images storage
+     * @return stored file
+     * @throws NotFoundException if there is no file under passed uri
+     */
+    public File getFile(String uri) {
+        File file = resolve(uri).toFile();
+        if (!file.isFile()) {
+            throw new NotFoundException("There is no image with this passed uri");
+        }
+        return file;
+    }
+
+    /**
+     * @return absolute path of file stored under uri
+     * @throws IllegalArgumentException if uri points outside of images storage
+     */
+    public Path resolve(String uri) {
+        Path path = root.resolve(uri.startsWith("/") ? uri.substring(1) : uri).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("Wrong image path " + uri);
+        }
+        return path;
+    }
+
+    private void copy(InputStream source, Path temp) throws IOException {
+        try (ReadableByteChannel in = Channels.newChannel(source);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = out.transferFrom(in, position, CHUNK_SIZE)) > 0) {
+                position += transferred;
+                if (position > maxSize) {
+                    throw new FileTooLargeException(tooLargeMessage());
+                }
+            }
+            out.force(false);
+        }
+    }
+
+    private void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Can't delete file " + path, e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private String tooLargeMessage() {
+        return "File is too large. Max allowed size is " + maxSize + " bytes";
+    }
+}
@@ -0,0 +1,56 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.util.LruCache;
+import com.softjourn.coin.server.util.QRCodeUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Renders QR codes and keeps encoded images of recently requested ones.
+ */
+@Service
+public class QRCodeService {
+
+    private final LruCache<String, byte[]> cache;
+
+    private final int maxSize;
+
+    private final int maxScale;
+
+    @Autowired
+    public QRCodeService(@Value("${qr.cache.max-size:4194304}") long cacheSize,
+                         @Value("${qr.max-size:1000}") int maxSize,
+                         @Value("${qr.max-scale:20}") int maxScale) {
+        this.cache = new LruCache<>(image -> image.length, cacheSize);
+        this.maxSize = maxSize;
+        this.maxScale = maxScale;
+    }
+
+    /**
+     * @param data  encoded text
+     * @param size  desired image size in pixels
+     * @param scale pixels per module, 0 to fit into size
+     * @return png image bytes
+     */
+    public byte[] getQRCode(String data, int size, int scale) {
+        if (size < 1 || size > maxSize) {
+            throw new IllegalArgumentException("QR code size should be between 1 and " + maxSize);
+        }
+        if (scale < 0 || scale > maxScale) {
+            throw new IllegalArgumentException("QR code scale should be between 0 and " + maxScale);
+        }
+        String key = size + ":" + scale + ":" + data;
+        byte[] image = cache.get(key);
+        if (image == null) {
+            image = QRCodeUtil.genQRCode(data, size, scale);
+            cache.put(key, image);
+        }
+        return image;
+    }
+
+    public LruCache.Stats getStats() {
+        return cache.getStats();
+    }
+}
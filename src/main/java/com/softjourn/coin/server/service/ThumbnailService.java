@@ -0,0 +1,210 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.exceptions.NotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Generates downscaled variants of images in background.
+ *
+ * Source image is decoded once and every smaller variant is scaled from the previous one.
+ * Variants are stored next to source image as {@code <name>-<size>.<png|jpg>}.
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+
+    private final ImageStorageService imageStorageService;
+
+    private final ImageCache imageCache;
+
+    /**
+     * Max side of variants in pixels, descending.
+     */
+    private final List<Integer> sizes;
+
+    private final long maxPixels;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ThumbnailService(ImageStorageService imageStorageService,
+                            ImageCache imageCache,
+                            @Value("${image.thumbnail.sizes:256,96,48}") String sizes,
+                            @Value("${image.thumbnail.max-pixels:40000000}") long maxPixels,
+                            @Value("${image.thumbnail.workers:2}") int workers,
+                            @Value("${image.thumbnail.queue-size:100}") int queueSize) {
+        this.imageStorageService = imageStorageService;
+        this.imageCache = imageCache;
+        this.sizes = Arrays.stream(sizes.split(","))
+                .map(String::trim)
+                .filter(size -> !size.isEmpty())
+                .map(Integer::valueOf)
+                .sorted(Comparator.reverseOrder())
+                .distinct()
+                .collect(Collectors.toList());
+        this.maxPixels = maxPixels;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize));
+    }
+
+    /**
+     * Schedules generation of all variants of image. Does nothing if generation
+     * is already scheduled or queue is full, variants will be requested again then.
+     *
+     * @param uri source image path relative to images storage
+     */
+    public void generateAsync(String uri) {
+        if (sizes.isEmpty() || !inProgress.add(uri)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(uri);
+                } catch (Exception e) {
+                    log.warn("Can't generate thumbnails of " + uri, e);
+                } finally {
+                    inProgress.remove(uri);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(uri);
+            log.warn("Thumbnails queue is full, {} is skipped", uri);
+        }
+    }
+
+    /**
+     * @param uri  source image path relative to images storage
+     * @param size requested max side of image in pixels
+     * @return uri of the smallest variant not smaller than requested size or of the largest one
+     * or null if there are no variants
+     */
+    public String getThumbnailUri(String uri, int size) {
+        if (sizes.isEmpty()) {
+            return null;
+        }
+        int variant = sizes.get(0);
+        for (Integer available : sizes) {
+            if (available >= size) {
+                variant = available;
+            }
+        }
+        return variantUri(uri, variant);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void generate(String uri) throws IOException {
+        File file;
+        try {
+            file = imageStorageService.getFile(uri);
+        } catch (NotFoundException e) {
+            return;
+        }
+        checkDimensions(file);
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            log.info("Image {} has unsupported format, thumbnails are not generated", uri);
+            return;
+        }
+
+        String format = formatOf(uri);
+        for (Integer size : sizes) {
+            image = scale(image, size, "png".equals(format));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, format, out);
+            String variantUri = variantUri(uri, size);
+            imageStorageService.storeVariant(out.toByteArray(), variantUri);
+            imageCache.invalidate(variantUri);
+        }
+    }
+
+    /**
+     * Reads dimensions from header to refuse huge images before they are decoded.
+     */
+    private void checkDimensions(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new IOException("Image " + file + " is too large to be scaled");
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales image so its larger side is not bigger than size.
+     * Image is halved step by step to keep quality of bilinear interpolation.
+     */
+    private static BufferedImage scale(BufferedImage source, int size, boolean alpha) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1.0, (double) size / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static String variantUri(String uri, int size) {
+        return uri + "-" + size + "." + formatOf(uri);
+    }
+
+    /**
+     * Formats with transparency keep it, all others are stored as jpeg.
+     */
+    private static String formatOf(String uri) {
+        String lower = uri.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".png") || lower.endsWith(".gif") ? "png" : "jpg";
+    }
+}
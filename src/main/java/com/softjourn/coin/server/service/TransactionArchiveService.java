@@ -0,0 +1,128 @@
+package com.softjourn.coin.server.service;
+
+import com.softjourn.coin.server.repository.ArchivedTransactionRepository;
+import com.softjourn.coin.server.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves transactions older than horizon from transactions table to archive table,
+ * so transactions table keeps only recent rows most of requests read.
+ *
+ * Rows are moved oldest first by chunks, each chunk is copied and deleted in one DB transaction,
+ * and mover pauses between chunks, so it never holds locks for long. Mover runs in its own thread
+ * and should be enabled on one node only.
+ */
+@Slf4j
+@Service
+public class TransactionArchiveService {
+
+    private final TransactionRepository transactionRepository;
+
+    private final ArchivedTransactionRepository archiveRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long horizonDays;
+
+    private final int chunkSize;
+
+    private final long pause;
+
+    private final int maxChunks;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public TransactionArchiveService(TransactionRepository transactionRepository,
+                                     ArchivedTransactionRepository archiveRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${transactions.archive.enabled:false}") boolean enabled,
+                                     @Value("${transactions.archive.horizon-days:365}") long horizonDays,
+                                     @Value("${transactions.archive.chunk-size:500}") int chunkSize,
+                                     @Value("${transactions.archive.pause:1000}") long pause,
+                                     @Value("${transactions.archive.max-chunks:100}") int maxChunks) {
+        this.transactionRepository = transactionRepository;
+        this.archiveRepository = archiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.horizonDays = horizonDays;
+        this.chunkSize = chunkSize;
+        this.pause = pause;
+        this.maxChunks = maxChunks;
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.archive.interval:3600000}")
+    public void archive() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                archive(Instant.now().minus(horizonDays, ChronoUnit.DAYS));
+            } catch (Exception e) {
+                log.error("Transactions archiving failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Moves at most max chunks of transactions created before horizon, the rest is moved by next runs.
+     */
+    private void archive(Instant horizon) {
+        long moved = 0;
+        try {
+            for (int chunk = 0; chunk < maxChunks; chunk++) {
+                int count = moveChunk(horizon);
+                moved += count;
+                if (count < chunkSize) {
+                    break;
+                }
+                Thread.sleep(pause);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (moved > 0) {
+                log.info("{} transactions created before {} are archived", moved, horizon);
+            }
+        }
+    }
+
+    private int moveChunk(Instant horizon) {
+        return transactionTemplate.execute(status -> {
+            List<Long> ids = transactionRepository.findIdsCreatedBefore(horizon, new PageRequest(0, chunkSize));
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            archiveRepository.copyFromTransactions(ids);
+            transactionRepository.deleteByIds(ids);
+            return ids.size();
+        });
+    }
+}
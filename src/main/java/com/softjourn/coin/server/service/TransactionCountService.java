@@ -0,0 +1,139 @@
+package com.softjourn.coin.server.service;
+
+
+import com.softjourn.coin.server.entity.Transaction;
+import com.softjourn.coin.server.repository.TransactionRepository;
+import com.softjourn.coin.server.util.LruCache;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Approximate counts of filtered transactions.
+ *
+ * Counts are cached by normalized filter and recalculated in background when they get older
+ * than refresh interval, so requests never wait for count query.
+ */
+@Slf4j
+@Service
+public class TransactionCountService {
+
+    private final TransactionRepository repository;
+
+    private final LruCache<String, Count> counts;
+
+    private final long refreshInterval;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public TransactionCountService(TransactionRepository repository,
+                                   @Value("${transactions.count.cache-size:1000}") int cacheSize,
+                                   @Value("${transactions.count.refresh-interval:60000}") long refreshInterval,
+                                   @Value("${transactions.count.workers:2}") int workers) {
+        this.repository = repository;
+        this.counts = new LruCache<>(count -> 1, cacheSize);
+        this.refreshInterval = refreshInterval;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cacheSize));
+    }
+
+    /**
+     * @return cached count of transactions matching filter or null if filter was not counted yet.
+     * Missing and outdated counts are recalculated in background.
+     */
+    public Count getApproximateCount(GenericFilter<Transaction> filter) {
+        String key = key(filter);
+        Count count = counts.get(key);
+        if (count == null || count.getCounted().plusMillis(refreshInterval).isBefore(Instant.now())) {
+            refresh(key, filter);
+        }
+        return count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void refresh(String key, GenericFilter<Transaction> filter) {
+        if (!inProgress.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    counts.put(key, new Count(repository.countRows(filter), Instant.now()));
+                } catch (Exception e) {
+                    log.warn("Can't count transactions for filter " + key, e);
+                } finally {
+                    inProgress.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(key);
+        }
+    }
+
+    /**
+     * Filter as string that does not depend on order of conditions and values of IN conditions.
+     */
+    static String key(GenericFilter<?> filter) {
+        return filter.getOperation() + ":" + key(filter.getConditions());
+    }
+
+    private static String key(List<GenericFilter.Condition> conditions) {
+        if (conditions == null) {
+            return "";
+        }
+        return conditions.stream()
+                .map(TransactionCountService::key)
+                .sorted()
+                .collect(Collectors.joining(";"));
+    }
+
+    private static String key(GenericFilter.Condition condition) {
+        if (condition.isGroup()) {
+            return condition.getComparison() + "(" + key(condition.getNested()) + ")";
+        }
+        return condition.getField() + " " + condition.getComparison() + " " + normalize(condition.getComparison(), condition.getValue());
+    }
+
+    private static String normalize(GenericFilter.Comparison comparison, Object value) {
+        boolean set = comparison == GenericFilter.Comparison.in || comparison == GenericFilter.Comparison.notIn;
+        if (set && value instanceof Collection) {
+            return ((Collection<?>) value).stream()
+                    .map(String::valueOf)
+                    .sorted()
+                    .distinct()
+                    .collect(Collectors.joining(",", "[", "]"));
+        }
+        return String.valueOf(value);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Count {
+
+        private long value;
+
+        private Instant counted;
+    }
+}
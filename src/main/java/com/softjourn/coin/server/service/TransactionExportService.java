@@ -0,0 +1,246 @@
+package com.softjourn.coin.server.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.softjourn.coin.server.dto.TransactionDTO;
+import com.softjourn.coin.server.entity.Transaction;
+import com.softjourn.coin.server.repository.TransactionRepository;
+import com.softjourn.coin.server.util.JsonViews;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Exports all filtered transactions.
+ *
+ * Rows are read by streamed DB cursor and written by columns extractors. Text formats are written
+ * row by row, for xlsx only small window of rows is kept in memory while the rest of sheet
+ * is flushed to temporary file.
+ */
+@Service
+public class TransactionExportService {
+
+    static final List<Column> COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            new Column("Account", TransactionDTO::getAccount),
+            new Column("Amount", TransactionDTO::getAmount),
+            new Column("Comment", TransactionDTO::getComment),
+            new Column("Created", TransactionDTO::getCreated),
+            new Column("Destination", TransactionDTO::getDestination),
+            new Column("Error", TransactionDTO::getError),
+            new Column("Status", TransactionDTO::getStatus),
+            new Column("Type", TransactionDTO::getType)
+    ));
+
+    private static final String SHEET_NAME = "Transactions report";
+
+    private static final String DATE_FORMAT = "yyyy-mm-dd hh:mm:ss";
+
+    private final TransactionRepository repository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int rowWindow;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final CsvMapper csvMapper = new CsvMapper();
+
+    @Autowired
+    public TransactionExportService(TransactionRepository repository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${transactions.export.row-window:100}") int rowWindow) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.rowWindow = rowWindow;
+    }
+
+    /**
+     * Checks that filter and its sort are valid before anything is written to response.
+     *
+     * @throws IllegalArgumentException if filter can't be applied to transactions
+     */
+    public void check(GenericFilter<Transaction> filter) {
+        repository.checkQuery(filter, getSort(filter));
+    }
+
+    /**
+     * Writes all transactions matching filter in passed format. Page of filter is ignored, its sort is used.
+     * Rows of text formats are written to out while they are read from DB.
+     *
+     * @return count of exported transactions
+     */
+    public long export(GenericFilter<Transaction> filter, ExportFormat format, OutputStream out) throws IOException {
+        return export(filter, format, out, count -> {
+        });
+    }
+
+    /**
+     * @param progress consumer of count of rows exported so far, called after every row
+     * @see #export(GenericFilter, ExportFormat, OutputStream)
+     */
+    public long export(GenericFilter<Transaction> filter, ExportFormat format, OutputStream out,
+                       LongConsumer progress) throws IOException {
+        switch (format) {
+            case XLSX:
+                return exportExcel(filter, out, progress);
+            case CSV:
+                return exportCsv(filter, out, progress);
+            default:
+                return exportJson(filter, out, progress);
+        }
+    }
+
+    private long exportExcel(GenericFilter<Transaction> filter, OutputStream out, LongConsumer progress) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet(SHEET_NAME);
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat(DATE_FORMAT));
+
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                header.createCell(i).setCellValue(COLUMNS.get(i).getName());
+            }
+
+            int[] rowNumber = {1};
+            // connection is released before workbook is sent to client
+            long count = scroll(filter, progress, transaction -> {
+                Row row = sheet.createRow(rowNumber[0]++);
+                for (int i = 0; i < COLUMNS.size(); i++) {
+                    setValue(row.createCell(i), COLUMNS.get(i).getExtractor().apply(transaction), dateStyle);
+                }
+            });
+
+            workbook.write(out);
+            return count;
+        } finally {
+            workbook.dispose();
+        }
+    }
+
+    private long exportJson(GenericFilter<Transaction> filter, OutputStream out, LongConsumer progress) throws IOException {
+        ObjectWriter writer = jsonMapper.writerWithView(JsonViews.REGULAR.class)
+                .forType(TransactionDTO.class)
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long count;
+        try (SequenceWriter rows = writer.writeValues(out)) {
+            count = scroll(filter, progress, transaction -> write(rows, transaction));
+        }
+        if (count > 0) {
+            out.write('\n');
+        }
+        return count;
+    }
+
+    private long exportCsv(GenericFilter<Transaction> filter, OutputStream out, LongConsumer progress) throws IOException {
+        CsvSchema.Builder schema = CsvSchema.builder();
+        COLUMNS.forEach(column -> schema.addColumn(column.getName()));
+        ObjectWriter writer = csvMapper.writer(schema.build().withHeader())
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (SequenceWriter rows = writer.writeValues(out)) {
+            return scroll(filter, progress, transaction -> write(rows, COLUMNS.stream()
+                    .map(column -> toText(column.getExtractor().apply(transaction)))
+                    .toArray(String[]::new)));
+        }
+    }
+
+    /**
+     * Scrolls rows in read only transaction.
+     *
+     * @throws IOException if rows consumer failed to write row
+     */
+    private long scroll(GenericFilter<Transaction> filter, LongConsumer progress,
+                        Consumer<TransactionDTO> consumer) throws IOException {
+        long[] count = {0};
+        Consumer<TransactionDTO> counting = consumer.andThen(transaction -> progress.accept(++count[0]));
+        try {
+            return transactionTemplate.execute(status -> repository.scroll(filter, getSort(filter), TransactionDTO.class, counting));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void write(SequenceWriter rows, Object row) {
+        try {
+            rows.write(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toText(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Enum) {
+            return ((Enum) value).name();
+        }
+        return value.toString();
+    }
+
+    static Sort getSort(GenericFilter<Transaction> filter) {
+        if (filter.getPageable() == null) {
+            return new Sort(Sort.Direction.DESC, "created");
+        }
+        return filter.getPageable().toPageable().getSort();
+    }
+
+    private static void setValue(Cell cell, Object value, CellStyle dateStyle) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof BigDecimal) {
+            cell.setCellValue(((BigDecimal) value).doubleValue());
+        } else if (value instanceof Instant) {
+            cell.setCellValue(Date.from((Instant) value));
+            cell.setCellStyle(dateStyle);
+        } else if (value instanceof Enum) {
+            cell.setCellValue(((Enum) value).name());
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Column {
+
+        private final String name;
+
+        private final Function<TransactionDTO, Object> extractor;
+    }
+}
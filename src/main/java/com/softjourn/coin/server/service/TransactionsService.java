@@ -1,9 +1,16 @@
 package com.softjourn.coin.server.service;
 
 import com.softjourn.coin.server.controller.TransactionsController;
+import com.softjourn.coin.server.dto.CountedSlice;
+import com.softjourn.coin.server.dto.CursorPage;
 import com.softjourn.coin.server.dto.MobileTransactionDTO;
+import com.softjourn.coin.server.dto.TransactionCursor;
+import com.softjourn.coin.server.dto.TransactionDTO;
+import com.softjourn.coin.server.dto.TransactionRow;
+import com.softjourn.coin.server.entity.ArchivedTransaction;
 import com.softjourn.coin.server.entity.Transaction;
 import com.softjourn.coin.server.entity.TransactionStatus;
+import com.softjourn.coin.server.repository.ArchivedTransactionRepository;
 import com.softjourn.coin.server.repository.TransactionRepository;
 import com.softjourn.common.export.ExcelExport;
 import com.softjourn.common.export.ExportDefiner;
@@ -11,36 +18,129 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 import static com.softjourn.coin.server.service.GenericFilter.Condition.eq;
 
 @Service
 public class TransactionsService implements TransactionMapper {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 200;
+
     TransactionRepository repository;
 
+    TransactionCountService countService;
+
+    ArchivedTransactionRepository archiveRepository;
+
     @Autowired
-    public TransactionsService(TransactionRepository repository) {
+    public TransactionsService(TransactionRepository repository, TransactionCountService countService,
+                               ArchivedTransactionRepository archiveRepository) {
         this.repository = repository;
+        this.countService = countService;
+        this.archiveRepository = archiveRepository;
+    }
+
+    public Page<TransactionDTO> getFiltered(GenericFilter<Transaction> filter, Pageable pageable) {
+        return repository.findRows(filter, pageable, TransactionDTO.class);
     }
 
-    public Page<Transaction> getFiltered(GenericFilter<Transaction> filter, Pageable pageable) {
-        return repository.findAll(filter, pageable);
+    /**
+     * Filtered transactions without count query.
+     *
+     * @param count whether cached approximate count of transactions should be added
+     */
+    public Slice<TransactionDTO> getFilteredSlice(GenericFilter<Transaction> filter, Pageable pageable, boolean count) {
+        Slice<TransactionDTO> slice = repository.findSlice(filter, pageable, TransactionDTO.class);
+        if (!count) {
+            return slice;
+        }
+        TransactionCountService.Count approximate = countService.getApproximateCount(filter);
+        return approximate == null
+                ? new CountedSlice<>(slice, pageable, null, null)
+                : new CountedSlice<>(slice, pageable, approximate.getValue(), approximate.getCounted());
+    }
+
+    /**
+     * @param cursor cursor of page or null for the first page
+     * @param size   page size
+     * @param count  whether total count of transactions should be calculated
+     */
+    public CursorPage<TransactionDTO> getFiltered(GenericFilter<Transaction> filter, String cursor, int size, boolean count) {
+        return seek(filter, cursor, size, count ? repository.countRows(filter) : null, TransactionDTO.class);
     }
 
     public Transaction get(Long id) {
-        return repository.findOne(id);
+        Transaction transaction = repository.findOne(id);
+        if (transaction == null) {
+            ArchivedTransaction archived = archiveRepository.findOne(id);
+            return archived == null ? null : archived.toTransaction();
+        }
+        return transaction;
     }
 
     public Page<MobileTransactionDTO> getForUser(String user, Pageable pageable, TransactionsController.Direction direction) {
-        GenericFilter<Transaction> fromFilter = getFilter(direction, user);
-        Page<Transaction> transactions = repository.findAll(fromFilter, pageable);
-        return transactions.map(MobileTransactionDTO::new);
+        if (direction == TransactionsController.Direction.ALL && isHistorySort(pageable.getSort())) {
+            return repository.findHistory(user, pageable, MobileTransactionDTO.class);
+        }
+        return repository.findRows(getFilter(direction, user), pageable, MobileTransactionDTO.class);
+    }
+
+    public CursorPage<MobileTransactionDTO> getForUser(String user, String cursor, int size, TransactionsController.Direction direction) {
+        if (direction == TransactionsController.Direction.ALL) {
+            return toCursorPage(position -> repository.findHistoryAfter(user, position, Sort.Direction.DESC, size + 1,
+                    MobileTransactionDTO.class), cursor, size, null);
+        }
+        return seek(getFilter(direction, user), cursor, size, null, MobileTransactionDTO.class);
+    }
+
+    private <R extends TransactionRow> CursorPage<R> seek(Specification<Transaction> spec, String cursor, int size,
+                                                          Long total, Class<R> type) {
+        return toCursorPage(position -> repository.findAfter(spec, position, Sort.Direction.DESC, size + 1, type),
+                cursor, size, total);
+    }
+
+    /**
+     * Newest first page of transactions after cursor. One extra row is read to know whether next page exists.
+     */
+    private <R extends TransactionRow> CursorPage<R> toCursorPage(Function<TransactionCursor, List<R>> query,
+                                                                  String cursor, int size, Long total) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size should be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        TransactionCursor position = cursor == null || cursor.isEmpty() ? null : TransactionCursor.decode(cursor);
+        List<R> transactions = query.apply(position);
+
+        String next = null;
+        if (transactions.size() > size) {
+            transactions = transactions.subList(0, size);
+            next = TransactionCursor.of(transactions.get(size - 1)).encode();
+        }
+        return new CursorPage<>(transactions, next, total);
+    }
+
+    /**
+     * @return whether history of user can be read by merge, i.e. it is sorted by created and then by id in one direction
+     */
+    private static boolean isHistorySort(Sort sort) {
+        if (sort == null) {
+            return true;
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        sort.forEach(orders::add);
+        if (orders.isEmpty() || orders.size() > 2 || !orders.get(0).getProperty().equals("created")) {
+            return false;
+        }
+        return orders.size() == 1
+                || (orders.get(1).getProperty().equals("id") && orders.get(1).getDirection() == orders.get(0).getDirection());
     }
 
     private GenericFilter<Transaction> getFilter(TransactionsController.Direction direction, String user) {
@@ -55,7 +155,7 @@ public class TransactionsService implements TransactionMapper {
     }
 
     public Workbook export(GenericFilter<Transaction> filter) throws ReflectiveOperationException {
-        Page<Transaction> transactions = getFiltered(filter, filter.getPageable().toPageable());
+        Page<Transaction> transactions = repository.findAll(filter, filter.getPageable().toPageable());
 
         List<ExportDefiner> definers = new ArrayList<>();
 
@@ -0,0 +1,36 @@
+package com.softjourn.coin.server.util;
+
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * Image content kept in memory together with attributes of file it was read from.
+ */
+public class CachedImage extends ByteArrayResource {
+
+    private final String filename;
+
+    private final long lastModified;
+
+    private final long loaded;
+
+    public CachedImage(byte[] content, String filename, long lastModified) {
+        super(content, filename);
+        this.filename = filename;
+        this.lastModified = lastModified;
+        this.loaded = System.currentTimeMillis();
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+}
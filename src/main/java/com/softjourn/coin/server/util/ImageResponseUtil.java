@@ -0,0 +1,83 @@
+package com.softjourn.coin.server.util;
+
+import com.softjourn.coin.server.exceptions.NotFoundException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.Optional;
+
+public class ImageResponseUtil {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Build response for image with validators and caching headers.
+     *
+     * Whole file is sent by container with sendfile when it is supported,
+     * range requests and in-memory images are written by Spring.
+     *
+     * @return response or null if client's copy is not modified (304 status is already set in this case)
+     */
+    public static ResponseEntity<Resource> imageResponse(Resource image, String cacheControl,
+                                                         WebRequest webRequest, HttpServletRequest request) {
+        long lastModified;
+        long length;
+        try {
+            lastModified = image.lastModified();
+            length = image.contentLength();
+        } catch (IOException e) {
+            throw new NotFoundException("There is no image with this passed uri", e);
+        }
+        // ETag and Last-Modified headers are set by checkNotModified
+        if (webRequest.checkNotModified(eTag(length, lastModified), lastModified)) {
+            return null;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(cacheControl);
+        headers.setContentType(getContentType(image.getFilename(), request));
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (image instanceof FileSystemResource && canSendFile(request)) {
+            request.setAttribute(SENDFILE_FILENAME, ((FileSystemResource) image).getFile().getAbsolutePath());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            headers.setContentLength(length);
+            return new ResponseEntity<>(headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(image, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Strong ETag of image file. Stored images are replaced by atomic move only,
+     * so length and modification time change together with content.
+     * Cached copies keep attributes of file, so they have the same ETag.
+     */
+    public static String eTag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    private static boolean canSendFile(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                && "GET".equals(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null;
+    }
+
+    private static MediaType getContentType(String filename, HttpServletRequest request) {
+        return Optional.ofNullable(filename)
+                .map(request.getServletContext()::getMimeType)
+                .map(MediaType::parseMediaType)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.softjourn.coin.server.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least recently used cache bounded by total weight of values.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ToLongFunction<V> weigher;
+
+    private final long maxWeight;
+
+    private long weight;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * @param weigher   weight of value, e.g. size in bytes
+     * @param maxWeight max total weight of values in cache
+     */
+    public LruCache(ToLongFunction<V> weigher, long maxWeight) {
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return cached value or null
+     */
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Puts value to cache evicting least recently used values if needed.
+     * Values heavier than whole cache are not cached.
+     *
+     * @return whether value was cached
+     */
+    public synchronized boolean put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maxWeight) {
+            return false;
+        }
+        remove(key);
+        entries.put(key, value);
+        weight += valueWeight;
+
+        Iterator<V> iterator = entries.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= weigher.applyAsLong(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+        return true;
+    }
+
+    public synchronized void remove(K key) {
+        V removed = entries.remove(key);
+        if (removed != null) {
+            weight -= weigher.applyAsLong(removed);
+        }
+    }
+
+    public synchronized void removeIf(Predicate<K> predicate) {
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+            if (predicate.test(entry.getKey())) {
+                weight -= weigher.applyAsLong(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), weight, maxWeight, hits, misses, evictions);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Stats {
+
+        private int size;
+
+        private long weight;
+
+        private long maxWeight;
+
+        private long hits;
+
+        private long misses;
+
+        private long evictions;
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+}
@@ -8,10 +8,11 @@ import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
 
@@ -21,42 +22,70 @@ public class QRCodeUtil {
 
     public static final int IMAGE_SIZE = 250;
 
+    private static final int QUIET_ZONE = 4;
+
     /**
      * Generate QR code from data bytes interpreted as hex string.
      * @param data data bytes
      * @return png image bytes
      */
     public static byte[] genQRCode(String data) {
+        return genQRCode(data, IMAGE_SIZE, 0);
+    }
+
+    /**
+     * Generate QR code with whole number of pixels per module, so modules stay sharp.
+     *
+     * @param data  encoded text
+     * @param size  desired image size in pixels, used to pick scale if it is not passed
+     * @param scale pixels per module, 0 to fit into size
+     * @return png image bytes
+     */
+    public static byte[] genQRCode(String data, int size, int scale) {
         try {
             Map<EncodeHintType, Object> hintMap = new EnumMap<>(EncodeHintType.class);
             hintMap.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-
             hintMap.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
+            hintMap.put(EncodeHintType.MARGIN, QUIET_ZONE);
 
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix byteMatrix = qrCodeWriter.encode(data, BarcodeFormat.QR_CODE, IMAGE_SIZE, IMAGE_SIZE, hintMap);
-            int width = byteMatrix.getWidth();
-            BufferedImage image = new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB);
-            image.createGraphics();
-
-            Graphics2D graphics = (Graphics2D) image.getGraphics();
-            graphics.setColor(Color.WHITE);
-            graphics.fillRect(0, 0, width, width);
-            graphics.setColor(Color.BLACK);
-
-            for (int i = 0; i < width; i++) {
-                for (int j = 0; j < width; j++) {
-                    if (byteMatrix.get(i, j)) {
-                        graphics.fillRect(i, j, 1, 1);
-                    }
-                }
-            }
+            // zero size gives matrix with one bit per module
+            BitMatrix modules = new QRCodeWriter().encode(data, BarcodeFormat.QR_CODE, 0, 0, hintMap);
+            int moduleScale = scale > 0 ? scale : Math.max(1, size / modules.getWidth());
 
             ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            ImageIO.write(image, IMAGE_TYPE, buffer);
+            ImageIO.write(render(modules, moduleScale), IMAGE_TYPE, buffer);
             return buffer.toByteArray();
         } catch (WriterException | IOException e) {
             throw new RuntimeException("Error on creating QR code.", e);
         }
     }
+
+    /**
+     * Writes modules directly into packed 1-bit raster. Every image row is built once
+     * per module row and copied for the rest of rows of the same module.
+     */
+    private static BufferedImage render(BitMatrix modules, int scale) {
+        int width = modules.getWidth() * scale;
+        int height = modules.getHeight() * scale;
+        // default palette of binary image: 0 - black, 1 - white
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] raster = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (width + 7) / 8;
+
+        byte[] row = new byte[stride];
+        for (int y = 0; y < modules.getHeight(); y++) {
+            Arrays.fill(row, (byte) 0xFF);
+            for (int x = 0; x < modules.getWidth(); x++) {
+                if (modules.get(x, y)) {
+                    for (int pixel = x * scale; pixel < (x + 1) * scale; pixel++) {
+                        row[pixel >> 3] &= ~(0x80 >> (pixel & 7));
+                    }
+                }
+            }
+            for (int line = y * scale; line < (y + 1) * scale; line++) {
+                System.arraycopy(row, 0, raster, line * stride, stride);
+            }
+        }
+        return image;
+    }
 }
@@ -0,0 +1,14 @@
+-- Per account, transaction type and day sums of successful transactions.
+-- Filled by backfill job and updated on every saved transaction.
+CREATE TABLE IF NOT EXISTS `account_daily_stats` (
+  `account_id` varchar(255) NOT NULL,
+  `type` varchar(32) NOT NULL,
+  `day` date NOT NULL,
+  `in_sum` decimal(19,2) NOT NULL DEFAULT 0,
+  `in_count` bigint(20) NOT NULL DEFAULT 0,
+  `out_sum` decimal(19,2) NOT NULL DEFAULT 0,
+  `out_count` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`account_id`, `day`, `type`),
+  KEY `account_daily_stats_day_index` (`day`, `type`),
+  CONSTRAINT `FK_account_daily_stats_account` FOREIGN KEY (`account_id`) REFERENCES `accounts` (`ldap_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
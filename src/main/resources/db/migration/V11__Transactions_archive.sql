@@ -0,0 +1,8 @@
+-- Transactions older than archive horizon, moved out of `transactions` in chunks.
+-- Table has the same columns and indexes and rows keep their ids, so id is not generated here.
+CREATE TABLE `transactions_archive` LIKE `transactions`;
+
+ALTER TABLE `transactions_archive`
+  MODIFY `id` bigint(20) NOT NULL,
+  ADD CONSTRAINT `transactions_archive_account_fk` FOREIGN KEY (`account_ldap_id`) REFERENCES `accounts` (`ldap_id`),
+  ADD CONSTRAINT `transactions_archive_destination_fk` FOREIGN KEY (`destination_ldap_id`) REFERENCES `accounts` (`ldap_id`);
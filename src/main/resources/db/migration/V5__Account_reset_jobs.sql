@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS `reset_jobs` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `status` varchar(32) NOT NULL,
+  `last_ldap_id` varchar(255) DEFAULT NULL,
+  `processed` bigint(20) NOT NULL DEFAULT 0,
+  `failed` bigint(20) NOT NULL DEFAULT 0,
+  `started` datetime DEFAULT NULL,
+  `updated` datetime DEFAULT NULL,
+  `finished` datetime DEFAULT NULL,
+  `error` text,
+  PRIMARY KEY (`id`),
+  KEY `reset_jobs_status_index` (`status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,13 @@
+ALTER TABLE `accounts`
+  ADD COLUMN `version` bigint(20) NOT NULL DEFAULT 0;
+
+CREATE INDEX `accounts_version_index` ON `accounts` (`version`);
+
+CREATE TABLE IF NOT EXISTS `account_directory` (
+  `id` int(11) NOT NULL,
+  `version` bigint(20) NOT NULL DEFAULT 0,
+  `resync_version` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO `account_directory` (`id`, `version`, `resync_version`) VALUES (1, 0, 0);
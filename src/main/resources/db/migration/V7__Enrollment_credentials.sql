@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS `enrollment_credentials` (
+  `email` varchar(255) NOT NULL,
+  `token` text,
+  `expires` datetime DEFAULT NULL,
+  `updated` datetime DEFAULT NULL,
+  PRIMARY KEY (`email`),
+  KEY `enrollment_credentials_expires_index` (`expires`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,18 @@
+CREATE TABLE IF NOT EXISTS `image_blobs` (
+  `hash` char(64) NOT NULL,
+  `extension` varchar(8) NOT NULL,
+  `size` bigint(20) NOT NULL,
+  `created` datetime NOT NULL,
+  `updated` datetime NOT NULL,
+  PRIMARY KEY (`hash`),
+  KEY `image_blobs_updated_index` (`updated`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE IF NOT EXISTS `account_images` (
+  `account_id` varchar(255) NOT NULL,
+  `hash` char(64) NOT NULL,
+  `updated` datetime NOT NULL,
+  PRIMARY KEY (`account_id`),
+  KEY `account_images_hash_index` (`hash`),
+  CONSTRAINT `FK_account_images_account` FOREIGN KEY (`account_id`) REFERENCES `accounts` (`ldap_id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,16 @@
+-- Transactions of user ordered by date (/transactions/my, filters by account or destination).
+-- These indexes start with FK columns, so they replace single column FK indexes.
+CREATE INDEX `transactions_account_created_index` ON `transactions` (`account_ldap_id`, `created`);
+CREATE INDEX `transactions_destination_created_index` ON `transactions` (`destination_ldap_id`, `created`);
+
+ALTER TABLE `transactions`
+  DROP INDEX `FK20w7wsg13u9srbq3bd7chfxdh`,
+  DROP INDEX `FKcsb0kdvsdj55hikqj3unk926t`;
+
+-- Filtered lists of transactions of some type in date range and unfiltered lists ordered by date.
+CREATE INDEX `transactions_type_created_index` ON `transactions` (`type`, `created`);
+CREATE INDEX `transactions_created_index` ON `transactions` (`created`);
+
+-- Accounts by type (AccountRepository.getAccountsByType) ordered by is_new desc, full_name.
+-- MySQL 5.7 ignores DESC and uses index for filtering only, 8.0 also reads rows in requested order.
+CREATE INDEX `accounts_type_deleted_new_name_index` ON `accounts` (`account_type`, `deleted`, `is_new` DESC, `full_name`);